@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MonomerDictionary;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NaturalAnalogIndex;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.PathHasher;
+
+/**
+ * BitPositionCache class remembers the bit positions of the single monomers and short paths,
+ * which make up most of the paths of every fingerprint but come from a small set of units. The
+ * positions are kept for the largest fingerprint size, the position for a smaller size is the
+ * same modulo that size, see {@link PathHasher}. There is one cache for each hash function.
+ * <p>
+ * Single monomers are looked up by their unit id in the {@link MonomerDictionary}, all monomers of
+ * the monomer store are hashed when a new store is seen. Paths of up to {@link #MAX_PATH_LENGTH}
+ * monomers are looked up by their path key in a table of a fixed size, a path replaces the one in
+ * its slot, so the table does not grow with the number of paths. The cache is thread-safe without
+ * locks, two threads that miss the same path both hash it.
+ */
+final class BitPositionCache {
+    /**
+     * Maximal number of monomers of the paths that are kept in the table of paths.
+     */
+    static final int MAX_PATH_LENGTH = 3;
+
+    private static final int POSITION_BITS = Integer.numberOfTrailingZeros(FingerprintConfig.MAX_SIZE);
+    private static final long POSITION_MASK = (1L << POSITION_BITS) - 1;
+    private static final int PATH_SLOTS = 1 << 16;
+    private static final BitPositionCache[] INSTANCES = new BitPositionCache[HashFunction.values().length];
+
+    static {
+        for (HashFunction hashFunction : HashFunction.values()) {
+            INSTANCES[hashFunction.ordinal()] = new BitPositionCache(hashFunction);
+        }
+    }
+
+    private final HashFunction hashFunction;
+    private final MonomerDictionary dictionary = MonomerDictionary.getInstance();
+    // Position plus one of every unit id, 0 if the unit is not hashed yet.
+    private volatile int[] unitPositions = new int[256];
+    // Upper bits of the path key and the position in the lower bits, 0 for a free slot.
+    private final AtomicLongArray paths = new AtomicLongArray(PATH_SLOTS);
+    private volatile NaturalAnalogIndex loadedStore;
+
+    private BitPositionCache(HashFunction hashFunction) {
+        this.hashFunction = hashFunction;
+    }
+
+    /**
+     * @param hashFunction the hash function of the positions
+     * @return the process-wide cache of the hash function
+     */
+    static BitPositionCache getInstance(HashFunction hashFunction) {
+        return INSTANCES[hashFunction.ordinal()];
+    }
+
+    /**
+     * Hashes all monomers of a monomer store, unless it was loaded before.
+     *
+     * @param naturalAnalogs the index of the monomer store
+     * @param hasher the hasher of the calling thread
+     * @throws NoSuchAlgorithmException if SHA-256 is not available
+     */
+    void load(NaturalAnalogIndex naturalAnalogs, PathHasher hasher) throws NoSuchAlgorithmException {
+        if (loadedStore == naturalAnalogs) {
+            return;
+        }
+        for (String unit : naturalAnalogs.getMonomerUnits()) {
+            getUnitPosition(dictionary.getUnitId(unit), hasher);
+        }
+        loadedStore = naturalAnalogs;
+    }
+
+    /**
+     * Gets the bit position of a path of {@link PathVisitor#onPath(int[], int, long)}.
+     *
+     * @param pathGenerator the generator of the path
+     * @param unitIds the unit ids of the path
+     * @param length the number of monomers of the path
+     * @param key the key of the path, see {@link PathGenerator#getPathKey(int[], int)}
+     * @param hasher the hasher of the calling thread
+     * @return the bit position in a fingerprint of the largest size
+     * @throws NoSuchAlgorithmException if SHA-256 is not available
+     */
+    int getBitPosition(PathGenerator pathGenerator, int[] unitIds, int length, long key, PathHasher hasher)
+            throws NoSuchAlgorithmException {
+        if (length == 1) {
+            return getUnitPosition(unitIds[0], hasher);
+        }
+        if (length > MAX_PATH_LENGTH) {
+            return hash(pathGenerator.getPath(unitIds, length), hasher);
+        }
+        // The slot is taken from the bits of the key below the stored ones, so all 64 bits select the entry.
+        int slot = (int) (key & (PATH_SLOTS - 1));
+        long entry = paths.get(slot);
+        if (entry != 0 && (entry & ~POSITION_MASK) == (key & ~POSITION_MASK)) {
+            return (int) (entry & POSITION_MASK);
+        }
+        int position = hash(pathGenerator.getPath(unitIds, length), hasher);
+        paths.lazySet(slot, (key & ~POSITION_MASK) | position);
+        return position;
+    }
+
+    /**
+     * Gets the bit position of a path string, single monomers that are known to the dictionary
+     * are taken from the cache.
+     *
+     * @param path the path string
+     * @param hasher the hasher of the calling thread
+     * @return the bit position in a fingerprint of the largest size
+     * @throws NoSuchAlgorithmException if SHA-256 is not available
+     */
+    int getBitPosition(String path, PathHasher hasher) throws NoSuchAlgorithmException {
+        int unitId = dictionary.findUnitId(path);
+        return unitId >= 0 ? getUnitPosition(unitId, hasher) : hash(path, hasher);
+    }
+
+    private int getUnitPosition(int unitId, PathHasher hasher) throws NoSuchAlgorithmException {
+        int[] positions = unitPositions;
+        if (unitId < positions.length && positions[unitId] != 0) {
+            return positions[unitId] - 1;
+        }
+        int position = hash(dictionary.getUnit(unitId), hasher);
+        setUnitPosition(unitId, position);
+        return position;
+    }
+
+    private synchronized void setUnitPosition(int unitId, int position) {
+        int[] positions = unitPositions;
+        if (unitId >= positions.length) {
+            positions = Arrays.copyOf(positions, Math.max(2 * positions.length, unitId + 1));
+        }
+        positions[unitId] = position + 1;
+        // Writing the array again publishes the new entry to the readers.
+        unitPositions = positions;
+    }
+
+    private int hash(CharSequence path, PathHasher hasher) throws NoSuchAlgorithmException {
+        return hasher.getBitPosition(path, hashFunction, POSITION_BITS);
+    }
+}
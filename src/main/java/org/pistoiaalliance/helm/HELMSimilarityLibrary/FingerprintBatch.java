@@ -0,0 +1,191 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import org.helm.notation2.parser.notation.HELM2Notation;
+
+/**
+ * FingerprintBatch class calculates the fingerprints of many notations in parallel on the
+ * executor of the {@link FingerprintOptions}, see
+ * {@link Fingerprinter#calculateFingerprints(List, FingerprintOptions)}.
+ */
+final class FingerprintBatch {
+
+    private FingerprintBatch() {
+    }
+
+    /**
+     * Calculation of the fingerprints of one input, like a HELM2Notation or a HELM string.
+     */
+    interface Calculation<T> {
+        FingerprintPair calculate(T input, FingerprintConfig config) throws Exception;
+    }
+
+    static List<FingerprintResult> calculate(List<HELM2Notation> notations, FingerprintOptions options)
+            throws InterruptedException {
+        HELM2Notation[] input = notations.toArray(new HELM2Notation[0]);
+        FingerprintResult[] results = new FingerprintResult[input.length];
+        ExecutorService executor = options.getExecutor();
+        List<Future<?>> futures = new ArrayList<>();
+        Calculation<HELM2Notation> calculation = getCalculation(options);
+
+        for (int start = 0; start < input.length; start += options.getBatchSize()) {
+            int from = start;
+            int to = Math.min(input.length, start + options.getBatchSize());
+            futures.add(executor.submit(() -> {
+                for (int i = from; i < to; i++) {
+                    results[i] = calculate(i, input[i], calculation, options);
+                }
+            }));
+        }
+        for (Future<?> future : futures) {
+            await(future, futures);
+        }
+        return Arrays.asList(results);
+    }
+
+    static Iterator<FingerprintResult> calculate(Iterator<HELM2Notation> notations, FingerprintOptions options) {
+        return calculate(notations, getCalculation(options), options);
+    }
+
+    /**
+     * @return the calculation of the fingerprints of a notation, through the cache of the options if there is one
+     */
+    private static Calculation<HELM2Notation> getCalculation(FingerprintOptions options) {
+        PersistentFingerprintCache cache = options.getCache();
+        return cache != null ? cache::get : Fingerprinter::calculateFingerprints;
+    }
+
+    static <T> Iterator<FingerprintResult> calculate(Iterator<T> inputs, Calculation<T> calculation,
+                                                     FingerprintOptions options) {
+        return new ResultIterator<>(inputs, calculation, options);
+    }
+
+    /**
+     * Calculates the fingerprints of one input and captures any exception in the result.
+     */
+    static <T> FingerprintResult calculate(int index, T input, Calculation<T> calculation,
+                                           FingerprintOptions options) {
+        try {
+            // The natural paths are enumerated anyway, so the pair costs hardly more than the fingerprint alone.
+            FingerprintPair pair = calculation.calculate(input, options.getConfig());
+            return new FingerprintResult(index, pair, options.isNaturalAnalogs());
+        } catch (Exception e) {
+            return new FingerprintResult(index, e);
+        }
+    }
+
+    private static <T> T await(Future<T> future, Iterable<? extends Future<?>> all) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            all.forEach(f -> f.cancel(true));
+            throw e;
+        } catch (ExecutionException e) {
+            // Exceptions are captured per notation, so only errors end up here.
+            all.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Fingerprint calculation failed.", cause);
+        }
+    }
+
+    /**
+     * Iterator that reads the inputs in batches, keeps a bounded number of batches in
+     * calculation and returns the results in input order.
+     */
+    private static final class ResultIterator<T> implements Iterator<FingerprintResult> {
+        private final Iterator<T> notations;
+        private final Calculation<T> calculation;
+        private final FingerprintOptions options;
+        private final ExecutorService executor;
+        private final int maxPendingBatches;
+        private final Deque<Future<FingerprintResult[]>> pending = new ArrayDeque<>();
+        private FingerprintResult[] current = new FingerprintResult[0];
+        private int position;
+        private int nextIndex;
+
+        ResultIterator(Iterator<T> notations, Calculation<T> calculation, FingerprintOptions options) {
+            this.notations = notations;
+            this.calculation = calculation;
+            this.options = options;
+            this.executor = options.getExecutor();
+            int parallelism = executor instanceof ForkJoinPool ? ((ForkJoinPool) executor).getParallelism()
+                    : Runtime.getRuntime().availableProcessors();
+            this.maxPendingBatches = 2 * parallelism;
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (position < current.length) {
+                return true;
+            }
+            submitBatches();
+            return !pending.isEmpty();
+        }
+
+        @Override
+        public FingerprintResult next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            if (position == current.length) {
+                try {
+                    current = await(pending.poll(), pending);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for fingerprints.", e);
+                }
+                position = 0;
+                submitBatches();
+            }
+            return current[position++];
+        }
+
+        private void submitBatches() {
+            while (pending.size() < maxPendingBatches && notations.hasNext()) {
+                List<T> batch = new ArrayList<>(options.getBatchSize());
+                while (batch.size() < options.getBatchSize() && notations.hasNext()) {
+                    batch.add(notations.next());
+                }
+                int firstIndex = nextIndex;
+                nextIndex += batch.size();
+                pending.add(executor.submit(() -> {
+                    FingerprintResult[] results = new FingerprintResult[batch.size()];
+                    for (int i = 0; i < results.length; i++) {
+                        results[i] = calculate(firstIndex + i, batch.get(i), calculation, options);
+                    }
+                    return results;
+                }));
+            }
+        }
+    }
+}
@@ -0,0 +1,239 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.helm.notation2.exception.ChemistryException;
+import org.helm.notation2.exception.MonomerLoadingException;
+import org.helm.notation2.parser.notation.HELM2Notation;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NaturalAnalogIndex;
+
+/**
+ * FingerprintCache class keeps the fingerprint pairs of recently used HELM notations, so a
+ * notation that is queried again skips parsing, graph building and path enumeration. The
+ * notations are keyed by their normalized HELM string. The cache is bounded by a number of
+ * entries and by a weight, the approximate number of bytes of the keys and fingerprints, and
+ * evicts the least recently used entries first. The natural analog fingerprints depend on the
+ * monomer store, so the cache is cleared when the version of the natural analogs changes, see
+ * {@link NaturalAnalogIndex#getVersion()}. It can be used from several threads, a
+ * notation that is missing is calculated outside of the lock, so two threads may calculate
+ * the same notation at the same time.
+ */
+public final class FingerprintCache {
+    // Approximate bytes of an entry besides its key and fingerprint words.
+    private static final int ENTRY_OVERHEAD = 128;
+
+    private final int maxEntries;
+    private final long maxWeight;
+    private final FingerprintConfig config;
+    private final LinkedHashMap<String, FingerprintPair> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long weight;
+    // Version of the natural analogs of the cached fingerprints, only valid if there is one.
+    private boolean hasVersion;
+    private long version;
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+
+    /**
+     * Creates a cache of the fingerprints of the default configuration.
+     *
+     * @param maxEntries the maximal number of cached notations
+     */
+    public FingerprintCache(int maxEntries) {
+        this(maxEntries, Long.MAX_VALUE, FingerprintConfig.DEFAULT);
+    }
+
+    /**
+     * @param maxEntries the maximal number of cached notations
+     * @param maxWeight the maximal approximate number of bytes of the cached keys and fingerprints
+     * @param config the configuration of the cached fingerprints
+     */
+    public FingerprintCache(int maxEntries, long maxWeight, FingerprintConfig config) {
+        if (maxEntries < 1) {
+            throw new IllegalArgumentException("Maximal number of entries must be positive, but was " + maxEntries
+                    + ".");
+        }
+        if (maxWeight < 1) {
+            throw new IllegalArgumentException("Maximal weight must be positive, but was " + maxWeight + ".");
+        }
+        if (config == null) {
+            throw new IllegalArgumentException("Fingerprint configuration must not be null.");
+        }
+        this.maxEntries = maxEntries;
+        this.maxWeight = maxWeight;
+        this.config = config;
+    }
+
+    /**
+     * Normalizes a HELM string to its cache key by removing surrounding whitespace, which is
+     * common in HELM strings that are read from files or entered by users.
+     *
+     * @param helm the HELM string
+     * @return the cache key
+     */
+    public static String normalize(String helm) {
+        return helm.trim();
+    }
+
+    /**
+     * Gets the fingerprints of a HELM string from the cache, or calculates and caches them.
+     *
+     * @param helm the HELM string
+     * @return the fingerprint pair of the configuration of the cache
+     * @throws Exception if the fingerprints cannot be calculated
+     */
+    public FingerprintPair get(String helm) throws Exception {
+        String key = normalize(helm);
+        long version = NaturalAnalogIndex.getInstance().getVersion();
+        FingerprintPair pair = getIfPresent(key, version);
+        if (pair == null) {
+            pair = Fingerprinter.calculateFingerprints(key, config);
+            put(key, pair, version);
+        }
+        return pair;
+    }
+
+    /**
+     * Gets the fingerprints of a notation from the cache, or calculates and caches them. The
+     * notation is keyed by its HELM2 string.
+     *
+     * @param notation the HELM notation
+     * @return the fingerprint pair of the configuration of the cache
+     * @throws Exception if the fingerprints cannot be calculated
+     */
+    public FingerprintPair get(HELM2Notation notation) throws Exception {
+        String key = normalize(notation.toHELM2());
+        long version = NaturalAnalogIndex.getInstance().getVersion();
+        FingerprintPair pair = getIfPresent(key, version);
+        if (pair == null) {
+            pair = Fingerprinter.calculateFingerprints(notation, config);
+            put(key, pair, version);
+        }
+        return pair;
+    }
+
+    /**
+     * @param helm the HELM string
+     * @return the cached fingerprints of the HELM string, or null if they are not cached
+     * @throws MonomerLoadingException if the monomer store cannot be loaded
+     * @throws ChemistryException if the monomer store cannot be loaded
+     */
+    public FingerprintPair getIfPresent(String helm) throws MonomerLoadingException, ChemistryException {
+        return getIfPresent(helm, NaturalAnalogIndex.getInstance().getVersion());
+    }
+
+    /**
+     * Gets the cached fingerprints of a HELM string, after clearing the cache if its fingerprints
+     * were calculated with another version of the natural analogs.
+     */
+    synchronized FingerprintPair getIfPresent(String helm, long version) {
+        if (!hasVersion || version != this.version) {
+            entries.clear();
+            weight = 0;
+            this.version = version;
+            hasVersion = true;
+        }
+        FingerprintPair pair = entries.get(normalize(helm));
+        if (pair != null) {
+            hitCount++;
+        } else {
+            missCount++;
+        }
+        return pair;
+    }
+
+    private synchronized void put(String key, FingerprintPair pair, long version) {
+        if (version != this.version) {
+            // The natural analogs changed while the fingerprints were calculated.
+            return;
+        }
+        FingerprintPair previous = entries.put(key, pair);
+        if (previous != null) {
+            weight -= weigh(key, previous);
+        }
+        weight += weigh(key, pair);
+        // The least recently used entries come first, the new entry is kept even if it alone is too heavy.
+        Iterator<Map.Entry<String, FingerprintPair>> eldest = entries.entrySet().iterator();
+        while ((entries.size() > maxEntries || weight > maxWeight) && entries.size() > 1) {
+            Map.Entry<String, FingerprintPair> entry = eldest.next();
+            weight -= weigh(entry.getKey(), entry.getValue());
+            eldest.remove();
+            evictionCount++;
+        }
+    }
+
+    private static long weigh(String key, FingerprintPair pair) {
+        return ENTRY_OVERHEAD + 2L * key.length() + 2L * pair.getFingerprint().getSize() / Byte.SIZE;
+    }
+
+    /**
+     * Removes all entries, the statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+        weight = 0;
+    }
+
+    public FingerprintConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return the number of cached notations
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the approximate number of bytes of the cached keys and fingerprints
+     */
+    public synchronized long getWeight() {
+        return weight;
+    }
+
+    /**
+     * @return the number of lookups that found their notation in the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that did not find their notation in the cache
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * @return the number of entries that were removed to stay within the bounds
+     */
+    public synchronized long getEvictionCount() {
+        return evictionCount;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "FingerprintCache[size=" + entries.size() + ", weight=" + weight + ", hits=" + hitCount
+                + ", misses=" + missCount + ", evictions=" + evictionCount + "]";
+    }
+}
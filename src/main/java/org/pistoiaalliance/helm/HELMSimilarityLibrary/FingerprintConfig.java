@@ -0,0 +1,153 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+/**
+ * FingerprintConfig class holds the parameters of a fingerprint: its size in bits, the
+ * hash function that maps a path to a bit position, the maximal number of monomers of
+ * a path and the budget of the path enumeration. The size has to be a power of two between
+ * 64 and 16384. Instances are immutable, the with-methods return a modified copy.
+ */
+public final class FingerprintConfig {
+    public static final int MIN_SIZE = 64;
+    public static final int MAX_SIZE = 16384;
+    public static final int MAX_PATH_LENGTH = PathGenerator.MAX_SEARCH_DEPTH;
+
+    /**
+     * Configuration of earlier versions: 1024 bits, SHA-256 and paths of up to 6 monomers.
+     */
+    public static final FingerprintConfig DEFAULT = new FingerprintConfig(1024, HashFunction.LEGACY_SHA256);
+
+    private final int size;
+    private final HashFunction hashFunction;
+    private final int maxPathLength;
+    private final PathBudget pathBudget;
+
+    /**
+     * @param size the size of the fingerprint in bits, a power of two between 64 and 16384
+     * @param hashFunction the hash function that maps a path to a bit position
+     */
+    public FingerprintConfig(int size, HashFunction hashFunction) {
+        this(size, hashFunction, PathGenerator.DEFAULT_SEARCH_DEPTH);
+    }
+
+    /**
+     * @param size the size of the fingerprint in bits, a power of two between 64 and 16384
+     * @param hashFunction the hash function that maps a path to a bit position
+     * @param maxPathLength the maximal number of monomers of a path, from 1 to 32
+     */
+    public FingerprintConfig(int size, HashFunction hashFunction, int maxPathLength) {
+        this(size, hashFunction, maxPathLength, PathBudget.UNLIMITED);
+    }
+
+    private FingerprintConfig(int size, HashFunction hashFunction, int maxPathLength, PathBudget pathBudget) {
+        checkSize(size);
+        if (hashFunction == null) {
+            throw new IllegalArgumentException("Hash function must not be null.");
+        }
+        if (maxPathLength < 1 || maxPathLength > MAX_PATH_LENGTH) {
+            throw new IllegalArgumentException("Maximal path length must be between 1 and " + MAX_PATH_LENGTH
+                    + ", but was " + maxPathLength + ".");
+        }
+        if (pathBudget == null) {
+            throw new IllegalArgumentException("Path budget must not be null.");
+        }
+        this.size = size;
+        this.hashFunction = hashFunction;
+        this.maxPathLength = maxPathLength;
+        this.pathBudget = pathBudget;
+    }
+
+    /**
+     * Checks that a fingerprint size is a power of two between 64 and 16384.
+     *
+     * @param size the size of a fingerprint in bits
+     * @throws IllegalArgumentException if the size is not valid
+     */
+    public static void checkSize(int size) {
+        if (size < MIN_SIZE || size > MAX_SIZE || Integer.bitCount(size) != 1) {
+            throw new IllegalArgumentException("Fingerprint size must be a power of two between " + MIN_SIZE
+                    + " and " + MAX_SIZE + ", but was " + size + ".");
+        }
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of bits of a bit position, log2 of the size
+     */
+    public int getSizeBits() {
+        return Integer.numberOfTrailingZeros(size);
+    }
+
+    public HashFunction getHashFunction() {
+        return hashFunction;
+    }
+
+    /**
+     * @return the maximal number of monomers of a path
+     */
+    public int getMaxPathLength() {
+        return maxPathLength;
+    }
+
+    /**
+     * @return the budget of the path enumeration of one molecule, unlimited by default
+     */
+    public PathBudget getPathBudget() {
+        return pathBudget;
+    }
+
+    public FingerprintConfig withSize(int size) {
+        return new FingerprintConfig(size, hashFunction, maxPathLength, pathBudget);
+    }
+
+    public FingerprintConfig withHashFunction(HashFunction hashFunction) {
+        return new FingerprintConfig(size, hashFunction, maxPathLength, pathBudget);
+    }
+
+    public FingerprintConfig withMaxPathLength(int maxPathLength) {
+        return new FingerprintConfig(size, hashFunction, maxPathLength, pathBudget);
+    }
+
+    public FingerprintConfig withPathBudget(PathBudget pathBudget) {
+        return new FingerprintConfig(size, hashFunction, maxPathLength, pathBudget);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FingerprintConfig other = (FingerprintConfig) o;
+        return size == other.size && hashFunction == other.hashFunction && maxPathLength == other.maxPathLength
+                && pathBudget.equals(other.pathBudget);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * (31 * size + hashFunction.hashCode()) + maxPathLength) + pathBudget.hashCode();
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintConfig[size=" + size + ", hashFunction=" + hashFunction + ", maxPathLength="
+                + maxPathLength + ", pathBudget=" + pathBudget + "]";
+    }
+}
@@ -0,0 +1,407 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+/**
+ * FingerprintIndex class holds many fingerprints of one size for similarity searches. The ids of
+ * the entries, the numbers of set bits of their fingerprints and the words of all fingerprints are
+ * each stored in one array, the words of an entry directly after the words of the entry before,
+ * so a search reads the memory sequentially and does not follow any references. Entries whose
+ * number of set bits alone rules out the minimal similarity are skipped without reading their words.
+ * <p>
+ * Adding entries is not thread-safe, an index that is not changed any more can be searched by many
+ * threads at the same time. A top k search of a large index can be split into tasks that keep their
+ * k best entries in a bounded heap each, which are merged at the end. The similarity of two empty fingerprints is 0.
+ */
+public final class FingerprintIndex {
+    private static final int MIN_CAPACITY = 16;
+    // Largest array length that virtual machines allocate reliably.
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    // Smallest number of entries that a task of a parallel search gets.
+    private static final int MIN_TASK_SIZE = 1 << 16;
+    // Similarities are compared as fractions scaled to this many bits. Tanimoto coefficients of
+    // different value differ by at least 1 / MAX_SIZE^2 = 2^-28, so they keep their order.
+    private static final int SCORE_BITS = 30;
+
+    private final int fingerprintSize;
+    private final int wordCount;
+    // The words of all entries fit in one array, so the word offset of an entry always fits in an int.
+    private final int maxCapacity;
+    private int[] ids = new int[0];
+    private short[] cardinalities = new short[0];
+    private long[] words = new long[0];
+    private int size;
+
+    /**
+     * @param fingerprintSize the size of the fingerprints in bits, a power of two between 64 and 16384
+     */
+    public FingerprintIndex(int fingerprintSize) {
+        this(fingerprintSize, MIN_CAPACITY);
+    }
+
+    /**
+     * @param fingerprintSize the size of the fingerprints in bits, a power of two between 64 and 16384
+     * @param expectedSize the number of entries the index can hold without growing
+     * @throws IllegalStateException if the index cannot hold the expected number of entries
+     */
+    public FingerprintIndex(int fingerprintSize, int expectedSize) {
+        FingerprintConfig.checkSize(fingerprintSize);
+        this.fingerprintSize = fingerprintSize;
+        this.wordCount = fingerprintSize / Long.SIZE;
+        this.maxCapacity = MAX_ARRAY_LENGTH / wordCount;
+        allocate(Math.max(MIN_CAPACITY, expectedSize));
+    }
+
+    private void allocate(long capacity) {
+        if (capacity > maxCapacity) {
+            throw new IllegalStateException("An index of fingerprints of size " + fingerprintSize
+                    + " can hold at most " + maxCapacity + " entries, not " + capacity + ".");
+        }
+        ids = Arrays.copyOf(ids, (int) capacity);
+        cardinalities = Arrays.copyOf(cardinalities, (int) capacity);
+        words = Arrays.copyOf(words, (int) (capacity * wordCount));
+    }
+
+    /**
+     * Adds a fingerprint to the index.
+     *
+     * @param id the id of the fingerprint, e.g. the id of its notation in a database
+     * @param fingerprint a fingerprint of the size of the index
+     * @throws IllegalStateException if the index is full
+     */
+    public void add(int id, HelmFingerprint fingerprint) {
+        if (fingerprint.getSize() != fingerprintSize) {
+            throw new IllegalArgumentException("Fingerprint of size " + fingerprint.getSize()
+                    + " cannot be added to an index of size " + fingerprintSize + ".");
+        }
+        if (size == ids.length) {
+            // Grow up to the largest capacity before giving up.
+            allocate(size < maxCapacity ? Math.min(2L * size, maxCapacity) : size + 1L);
+        }
+        ids[size] = id;
+        cardinalities[size] = (short) fingerprint.getCardinality();
+        System.arraycopy(fingerprint.words, 0, words, size * wordCount, wordCount);
+        size++;
+    }
+
+    /**
+     * @return the number of entries
+     */
+    public int size() {
+        return size;
+    }
+
+    public int getFingerprintSize() {
+        return fingerprintSize;
+    }
+
+    /**
+     * @param index the position of the entry, in the order the entries were added
+     * @return the id of the entry
+     */
+    public int getId(int index) {
+        checkIndex(index);
+        return ids[index];
+    }
+
+    /**
+     * @param index the position of the entry, in the order the entries were added
+     * @return the fingerprint of the entry
+     */
+    public HelmFingerprint getFingerprint(int index) {
+        checkIndex(index);
+        return HelmFingerprint.wrapWords(Arrays.copyOfRange(words, index * wordCount, (index + 1) * wordCount));
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException("index " + index + " is not in [0, " + size + ")");
+        }
+    }
+
+    /**
+     * Searches all entries with a similarity (tanimoto coefficient) of at least the given one to the query.
+     *
+     * @param query a fingerprint of the size of the index
+     * @param minSimilarity the minimal similarity of a hit
+     * @return the hits, the most similar first
+     */
+    public SearchResult searchThreshold(HelmFingerprint query, double minSimilarity) {
+        checkQuery(query);
+        long[] queryWords = query.words;
+        int queryCardinality = query.getCardinality();
+        long[] hits = new long[MIN_CAPACITY];
+        int hitCount = 0;
+
+        for (int index = 0, offset = 0; index < size; index++, offset += wordCount) {
+            int cardinality = cardinalities[index];
+            // The similarity is at most the smaller number of set bits divided by the larger one.
+            if (getSimilarity(Math.min(cardinality, queryCardinality), Math.max(cardinality, queryCardinality))
+                    < minSimilarity) {
+                continue;
+            }
+            int common = 0;
+            for (int i = 0; i < wordCount; i++) {
+                common += Long.bitCount(queryWords[i] & words[offset + i]);
+            }
+            int union = queryCardinality + cardinality - common;
+            if (getSimilarity(common, union) >= minSimilarity) {
+                if (hitCount == hits.length) {
+                    hits = Arrays.copyOf(hits, 2 * hitCount);
+                }
+                hits[hitCount++] = getRank(common, union, index);
+            }
+        }
+        // The ranks of the hits in ascending order are the hits in descending order.
+        Arrays.sort(hits, 0, hitCount);
+        return getResult(query, hits, hitCount, true);
+    }
+
+    /**
+     * Searches the k entries that are most similar to the query in the calling thread.
+     *
+     * @param query a fingerprint of the size of the index
+     * @param k the maximal number of hits
+     * @return the k most similar entries, or all entries if the index has less, the most similar first
+     */
+    public SearchResult searchTopK(HelmFingerprint query, int k) {
+        checkTopK(query, k);
+        long[] heap = new long[Math.min(k, size)];
+        int heapSize = addTopK(query, 0, size, heap);
+        Arrays.sort(heap, 0, heapSize);
+        return getResult(query, heap, heapSize, false);
+    }
+
+    /**
+     * Searches the k entries that are most similar to the query in parallel. Every task searches a range of
+     * the entries and keeps its k best entries in a heap of its own, the heaps are merged at the end.
+     *
+     * @param query a fingerprint of the size of the index
+     * @param k the maximal number of hits
+     * @param executor the executor of the search, e.g. a {@link ForkJoinPool}. It is not shut down after the search.
+     * @return the k most similar entries, or all entries if the index has less, the most similar first
+     * @throws InterruptedException if the thread is interrupted while waiting for the search
+     */
+    public SearchResult searchTopK(HelmFingerprint query, int k, ExecutorService executor)
+            throws InterruptedException {
+        checkTopK(query, k);
+        int taskCount = Math.min((size + MIN_TASK_SIZE - 1) / MIN_TASK_SIZE,
+                4 * Runtime.getRuntime().availableProcessors());
+        if (taskCount <= 1 || k == 0) {
+            return searchTopK(query, k);
+        }
+        int heapLength = Math.min(k, size);
+        List<Future<long[]>> futures = new ArrayList<>(taskCount);
+        for (int task = 0; task < taskCount; task++) {
+            int from = (int) ((long) size * task / taskCount);
+            int to = (int) ((long) size * (task + 1) / taskCount);
+            futures.add(executor.submit(() -> {
+                long[] heap = new long[Math.min(heapLength, to - from)];
+                addTopK(query, from, to, heap);
+                return heap;
+            }));
+        }
+        long[] heap = new long[heapLength];
+        int heapSize = 0;
+        for (Future<long[]> future : futures) {
+            for (long rank : await(future, futures)) {
+                heapSize = add(heap, heapSize, rank);
+            }
+        }
+        Arrays.sort(heap, 0, heapSize);
+        return getResult(query, heap, heapSize, false);
+    }
+
+    /**
+     * Collects the inverted ranks of the best entries from index from to index to in a min-heap, the worst of
+     * them at the root.
+     *
+     * @return the number of entries in the heap
+     */
+    private int addTopK(HelmFingerprint query, int from, int to, long[] heap) {
+        int heapSize = 0;
+        long[] queryWords = query.words;
+        int queryCardinality = query.getCardinality();
+        for (int index = from, offset = from * wordCount; index < to && heap.length > 0;
+             index++, offset += wordCount) {
+            int common = 0;
+            for (int i = 0; i < wordCount; i++) {
+                common += Long.bitCount(queryWords[i] & words[offset + i]);
+            }
+            heapSize = add(heap, heapSize, ~getRank(common, queryCardinality + cardinalities[index] - common, index));
+        }
+        return heapSize;
+    }
+
+    private static int add(long[] heap, int heapSize, long invertedRank) {
+        if (heapSize < heap.length) {
+            siftUp(heap, heapSize, invertedRank);
+            return heapSize + 1;
+        }
+        if (invertedRank > heap[0]) {
+            siftDown(heap, heapSize, invertedRank);
+        }
+        return heapSize;
+    }
+
+    private void checkTopK(HelmFingerprint query, int k) {
+        checkQuery(query);
+        if (k < 0) {
+            throw new IllegalArgumentException("Number of hits must not be negative, but was " + k + ".");
+        }
+    }
+
+    private static <T> T await(Future<T> future, List<? extends Future<?>> all) throws InterruptedException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            all.forEach(f -> f.cancel(true));
+            throw e;
+        } catch (ExecutionException e) {
+            all.forEach(f -> f.cancel(true));
+            Throwable cause = e.getCause();
+            if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new IllegalStateException("Similarity search failed.", cause);
+        }
+    }
+
+    /**
+     * Searches all entries whose fingerprint contains every bit of the query, see
+     * {@link Subset#checkHelmRelationship(HelmFingerprint, HelmFingerprint)}.
+     *
+     * @param query a fingerprint of the size of the index
+     * @return the hits, the most similar first
+     */
+    public SearchResult searchSubsets(HelmFingerprint query) {
+        checkQuery(query);
+        long[] queryWords = query.words;
+        int queryCardinality = query.getCardinality();
+        long[] hits = new long[MIN_CAPACITY];
+        int hitCount = 0;
+
+        for (int index = 0, offset = 0; index < size; index++, offset += wordCount) {
+            int cardinality = cardinalities[index];
+            if (cardinality < queryCardinality) {
+                continue;
+            }
+            boolean subset = true;
+            for (int i = 0; i < wordCount && subset; i++) {
+                subset = (queryWords[i] & ~words[offset + i]) == 0;
+            }
+            if (subset) {
+                if (hitCount == hits.length) {
+                    hits = Arrays.copyOf(hits, 2 * hitCount);
+                }
+                // All bits of the query are common bits.
+                hits[hitCount++] = getRank(queryCardinality, cardinality, index);
+            }
+        }
+        Arrays.sort(hits, 0, hitCount);
+        return getResult(query, hits, hitCount, true);
+    }
+
+    private void checkQuery(HelmFingerprint query) {
+        if (query.getSize() != fingerprintSize) {
+            throw new IllegalArgumentException("Fingerprint of size " + query.getSize()
+                    + " cannot be searched in an index of size " + fingerprintSize + ".");
+        }
+    }
+
+    private static double getSimilarity(int common, int union) {
+        return union == 0 ? 0 : common / (double) union;
+    }
+
+    /**
+     * Gets the rank of an entry, a number that is smaller for more similar entries and, for the same
+     * similarity, for entries that were added earlier.
+     */
+    private static long getRank(int common, int union, int index) {
+        long score = union == 0 ? 0 : ((long) common << SCORE_BITS) / union;
+        return ((1L << SCORE_BITS) - score) << Integer.SIZE | index;
+    }
+
+    /**
+     * Creates the result from the ranks of the hits in ascending order, or from the inverted ranks of the hits
+     * in ascending order.
+     */
+    private SearchResult getResult(HelmFingerprint query, long[] ranks, int count, boolean ascending) {
+        int[] hitIds = new int[count];
+        double[] scores = new double[count];
+        long[] queryWords = query.words;
+        for (int hit = 0; hit < count; hit++) {
+            long rank = ascending ? ranks[hit] : ~ranks[count - 1 - hit];
+            int index = (int) rank;
+            int offset = index * wordCount;
+            int common = 0;
+            for (int i = 0; i < wordCount; i++) {
+                common += Long.bitCount(queryWords[i] & words[offset + i]);
+            }
+            hitIds[hit] = ids[index];
+            scores[hit] = getSimilarity(common, query.getCardinality() + cardinalities[index] - common);
+        }
+        return new SearchResult(hitIds, scores);
+    }
+
+    private static void siftUp(long[] heap, int position, long value) {
+        while (position > 0) {
+            int parent = (position - 1) >>> 1;
+            if (heap[parent] <= value) {
+                break;
+            }
+            heap[position] = heap[parent];
+            position = parent;
+        }
+        heap[position] = value;
+    }
+
+    /**
+     * Replaces the root of the heap with the given value.
+     */
+    private static void siftDown(long[] heap, int heapSize, long value) {
+        int position = 0;
+        while (true) {
+            int child = 2 * position + 1;
+            if (child >= heapSize) {
+                break;
+            }
+            if (child + 1 < heapSize && heap[child + 1] < heap[child]) {
+                child++;
+            }
+            if (heap[child] >= value) {
+                break;
+            }
+            heap[position] = heap[child];
+            position = child;
+        }
+        heap[position] = value;
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintIndex[size=" + size + ", fingerprintSize=" + fingerprintSize + "]";
+    }
+}
@@ -0,0 +1,127 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+ * FingerprintOptions class holds the parameters of a batch fingerprint calculation: the
+ * fingerprint configuration, whether the natural analog fingerprints are calculated too,
+ * the executor that runs the calculation, the number of notations per task and an optional
+ * persistent cache of the fingerprints. Instances
+ * are immutable, the with-methods return a modified copy.
+ */
+public final class FingerprintOptions {
+
+    /**
+     * Default fingerprint configuration with natural analogs, run on the common fork join pool
+     * in batches of 64 notations.
+     */
+    public static final FingerprintOptions DEFAULT = new FingerprintOptions(FingerprintConfig.DEFAULT, true, null, 64,
+            null);
+
+    private final FingerprintConfig config;
+    private final boolean naturalAnalogs;
+    private final ExecutorService executor;
+    private final int batchSize;
+    private final PersistentFingerprintCache cache;
+
+    private FingerprintOptions(FingerprintConfig config, boolean naturalAnalogs, ExecutorService executor,
+                               int batchSize, PersistentFingerprintCache cache) {
+        if (config == null) {
+            throw new IllegalArgumentException("Fingerprint configuration must not be null.");
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive, but was " + batchSize + ".");
+        }
+        this.config = config;
+        this.naturalAnalogs = naturalAnalogs;
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.cache = cache;
+    }
+
+    public FingerprintConfig getConfig() {
+        return config;
+    }
+
+    /**
+     * @return true if the combined natural analog fingerprint is calculated as well
+     */
+    public boolean isNaturalAnalogs() {
+        return naturalAnalogs;
+    }
+
+    /**
+     * @return the executor of the calculation, the common fork join pool if none was set
+     */
+    public ExecutorService getExecutor() {
+        return executor != null ? executor : ForkJoinPool.commonPool();
+    }
+
+    /**
+     * @return the number of notations that are calculated by one task
+     */
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    /**
+     * @return the cache that the fingerprints are read from and stored in, or null if they are always calculated
+     */
+    public PersistentFingerprintCache getCache() {
+        return cache;
+    }
+
+    public FingerprintOptions withConfig(FingerprintConfig config) {
+        return new FingerprintOptions(config, naturalAnalogs, executor, batchSize, cache);
+    }
+
+    public FingerprintOptions withNaturalAnalogs(boolean naturalAnalogs) {
+        return new FingerprintOptions(config, naturalAnalogs, executor, batchSize, cache);
+    }
+
+    /**
+     * @param executor the executor of the calculation, e.g. a {@link ForkJoinPool}, or null for the common pool.
+     *                 The executor is not shut down after the calculation.
+     * @return modified copy of these options
+     */
+    public FingerprintOptions withExecutor(ExecutorService executor) {
+        return new FingerprintOptions(config, naturalAnalogs, executor, batchSize, cache);
+    }
+
+    public FingerprintOptions withBatchSize(int batchSize) {
+        return new FingerprintOptions(config, naturalAnalogs, executor, batchSize, cache);
+    }
+
+    /**
+     * @param cache the cache that the fingerprints are read from and stored in, or null to always calculate them.
+     *              The cache is not closed after the calculation.
+     * @return modified copy of these options
+     */
+    public FingerprintOptions withCache(PersistentFingerprintCache cache) {
+        return new FingerprintOptions(config, naturalAnalogs, executor, batchSize, cache);
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintOptions[config=" + config + ", naturalAnalogs=" + naturalAnalogs + ", executor="
+                + getExecutor() + ", batchSize=" + batchSize
+                + ", cache=" + cache + "]";
+    }
+}
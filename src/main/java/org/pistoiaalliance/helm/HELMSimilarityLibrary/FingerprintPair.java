@@ -0,0 +1,105 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+/**
+ * FingerprintPair class holds the fingerprint of the original paths of a notation and its
+ * combined fingerprint of original and natural analog paths, both calculated from the same
+ * path enumeration. It also holds the maximal number of monomers of the paths, which is
+ * smaller than the one of the configuration if the path budget was exceeded.
+ */
+public final class FingerprintPair {
+
+    private final HelmFingerprint fingerprint;
+    private final HelmFingerprint naturalFingerprint;
+    private final int pathLength;
+    private final boolean truncated;
+
+    /**
+     * Creates a pair of fingerprints from paths of up to the default number of 6 monomers.
+     */
+    public FingerprintPair(HelmFingerprint fingerprint, HelmFingerprint naturalFingerprint) {
+        this(fingerprint, naturalFingerprint, PathGenerator.DEFAULT_SEARCH_DEPTH, false);
+    }
+
+    /**
+     * @param fingerprint the fingerprint of the original paths
+     * @param naturalFingerprint the combined fingerprint of original and natural analog paths
+     * @param pathLength the maximal number of monomers of the paths
+     * @param truncated true if the paths were shortened because the path budget was exceeded
+     */
+    public FingerprintPair(HelmFingerprint fingerprint, HelmFingerprint naturalFingerprint, int pathLength,
+                           boolean truncated) {
+        fingerprint.checkSameSize(naturalFingerprint);
+        this.fingerprint = fingerprint;
+        this.naturalFingerprint = naturalFingerprint;
+        this.pathLength = pathLength;
+        this.truncated = truncated;
+    }
+
+    /**
+     * @return the fingerprint of the original paths, like {@link Fingerprinter#calculateHelmFingerprint}
+     */
+    public HelmFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the combined fingerprint of original and natural analog paths, like
+     * {@link Fingerprinter#calculateHelmFingerprintNaturalAnalogs}
+     */
+    public HelmFingerprint getNaturalFingerprint() {
+        return naturalFingerprint;
+    }
+
+    /**
+     * @return the maximal number of monomers of the paths of the fingerprints
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @return true if the path budget was exceeded and the fingerprints are calculated from shorter paths
+     * than configured
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        FingerprintPair other = (FingerprintPair) o;
+        return pathLength == other.pathLength && truncated == other.truncated
+                && fingerprint.equals(other.fingerprint) && naturalFingerprint.equals(other.naturalFingerprint);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * fingerprint.hashCode() + naturalFingerprint.hashCode()) + 2 * pathLength
+                + (truncated ? 1 : 0);
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintPair[fingerprint=" + fingerprint + ", naturalFingerprint=" + naturalFingerprint
+                + ", pathLength=" + pathLength + (truncated ? ", truncated" : "") + "]";
+    }
+}
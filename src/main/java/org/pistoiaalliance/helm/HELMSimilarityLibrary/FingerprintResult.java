@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+/**
+ * FingerprintResult class holds the fingerprints of one notation of a batch calculation,
+ * or the exception that occurred while calculating them. If the path budget was exceeded,
+ * the result is marked as truncated.
+ */
+public final class FingerprintResult {
+
+    private final int index;
+    private final HelmFingerprint fingerprint;
+    private final HelmFingerprint naturalFingerprint;
+    private final int pathLength;
+    private final boolean truncated;
+    private final Exception error;
+
+    FingerprintResult(int index, FingerprintPair fingerprints, boolean naturalAnalogs) {
+        this.index = index;
+        this.fingerprint = fingerprints.getFingerprint();
+        this.naturalFingerprint = naturalAnalogs ? fingerprints.getNaturalFingerprint() : null;
+        this.pathLength = fingerprints.getPathLength();
+        this.truncated = fingerprints.isTruncated();
+        this.error = null;
+    }
+
+    FingerprintResult(int index, Exception error) {
+        this.index = index;
+        this.fingerprint = null;
+        this.naturalFingerprint = null;
+        this.pathLength = 0;
+        this.truncated = false;
+        this.error = error;
+    }
+
+    /**
+     * @return the position of the notation in the input
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    /**
+     * @return true if the fingerprints were calculated without an error
+     */
+    public boolean isSuccessful() {
+        return error == null;
+    }
+
+    /**
+     * @return the fingerprint of the original paths, null if an error occurred
+     */
+    public HelmFingerprint getFingerprint() {
+        return fingerprint;
+    }
+
+    /**
+     * @return the combined fingerprint of original and natural analog paths, null if an error
+     * occurred or natural analogs were not requested
+     */
+    public HelmFingerprint getNaturalFingerprint() {
+        return naturalFingerprint;
+    }
+
+    /**
+     * @return the maximal number of monomers of the paths of the fingerprints, 0 if an error occurred
+     */
+    public int getPathLength() {
+        return pathLength;
+    }
+
+    /**
+     * @return true if the path budget was exceeded and the fingerprints are calculated from shorter paths
+     * than configured
+     */
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    /**
+     * @return the exception of a failed calculation, null if it was successful
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "FingerprintResult[index=" + index + (error == null ? ", fingerprint=" + fingerprint
+                : ", error=" + error) + (truncated ? ", truncated" : "") + "]";
+    }
+}
@@ -16,29 +16,32 @@
  ******************************************************************************/
 package org.pistoiaalliance.helm.HELMSimilarityLibrary;
 
-import java.nio.charset.StandardCharsets;
-import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
 import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Set;
 
-import javax.xml.bind.DatatypeConverter;
-
 import org.helm.notation2.parser.notation.HELM2Notation;
-import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Graph;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.exception.NaturalAnalogException;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.LongHashSet;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraph;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraphUtils;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.PathHasher;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
- * Fingerprinter class creates a hashed fingerprint from a set of paths
- * using SHA-2 as the kryptographical hash function.
+ * Fingerprinter class creates a hashed fingerprint from a set of paths. By default
+ * the fingerprint has 1024 bits, SHA-2 is used as the kryptographical hash function and
+ * paths have up to 6 monomers, all of them can be changed with a {@link FingerprintConfig}.
  *
  * @author bueltel
  */
 public class Fingerprinter {
-    private static int size = 1024;
     private static final Logger LOG = LoggerFactory.getLogger(Fingerprinter.class);
+    private static final ThreadLocal<PathHasher> HASHER = ThreadLocal.withInitial(PathHasher::new);
 
     /**
      * Calculates the fingerprint for a given HELM notation by enumerating all of the monomer paths and representing
@@ -49,22 +52,29 @@ public class Fingerprinter {
      * @throws Exception if anything goes wrong
      */
     public static BitSet calculateFingerprint(HELM2Notation notation) throws Exception {
-        Graph molecule;
-        PathGenerator pathGenerator = new PathGenerator();
-        Set<String> allPaths;
-        BitSet fingerprint;
-
-        molecule = MoleculeGraphUtils.buildMoleculeGraph(notation.getListOfPolymers(), notation.getListOfConnections());
+        return calculateFingerprint(notation, FingerprintConfig.DEFAULT);
+    }
 
-        pathGenerator.findPaths(molecule);
-        allPaths = pathGenerator.getPaths();
+    /**
+     * Calculates the fingerprint for a given HELM notation like {@link #calculateFingerprint(HELM2Notation)},
+     * with the parameters of the given configuration.
+     *
+     * @param notation Input HELM notation that is translated into a bitSet fingerprint
+     * @param config the fingerprint configuration
+     * @return bit set fingerprint
+     * @throws Exception if anything goes wrong
+     */
+    public static BitSet calculateFingerprint(HELM2Notation notation, FingerprintConfig config) throws Exception {
+        MoleculeGraph molecule;
+        PathGenerator pathGenerator = new PathGenerator();
+        HashingVisitor visitor = new HashingVisitor(pathGenerator, config, null);
 
-        fingerprint = getHashedFingerprint(allPaths);
+        molecule = MoleculeGraphUtils.buildCompactMoleculeGraph(notation.getListOfPolymers(),
+                notation.getListOfConnections());
 
-        pathGenerator.clearPaths();
-        allPaths.clear();
+        int pathLength = visitPaths(pathGenerator, molecule, config, System.nanoTime(), visitor, null);
 
-        return fingerprint;
+        return BitSet.valueOf(visitor.getWords(pathLength));
     }
 
     /**
@@ -77,29 +87,263 @@ public class Fingerprinter {
      * @throws Exception if anything goes wrong
      */
     public static BitSet calculateFingerprintNaturalAnalogs(HELM2Notation notation) throws Exception {
-        Graph molecule;
+        return calculateFingerprintNaturalAnalogs(notation, FingerprintConfig.DEFAULT);
+    }
+
+    /**
+     * Calculates a combined fingerprint for a given HELM notation like
+     * {@link #calculateFingerprintNaturalAnalogs(HELM2Notation)}, with the parameters of the given configuration.
+     *
+     * @param notation Input HELM notation that is translated into a bitSet fingerprint
+     * @param config the fingerprint configuration
+     * @return bit set fingerprint
+     * @throws Exception if anything goes wrong
+     */
+    public static BitSet calculateFingerprintNaturalAnalogs(HELM2Notation notation, FingerprintConfig config)
+            throws Exception {
+        return calculateFingerprints(notation, config).getNaturalFingerprint().toBitSet();
+    }
+
+    /**
+     * Calculates the fingerprint and the combined natural analog fingerprint for a given HELM notation from one
+     * molecule graph and one path enumeration, see {@link #calculateFingerprint(HELM2Notation)} and
+     * {@link #calculateFingerprintNaturalAnalogs(HELM2Notation)}.
+     *
+     * @param notation Input HELM notation that is translated into fingerprints
+     * @return both fingerprints of size 1024
+     * @throws Exception if anything goes wrong
+     */
+    public static FingerprintPair calculateFingerprints(HELM2Notation notation) throws Exception {
+        return calculateFingerprints(notation, FingerprintConfig.DEFAULT);
+    }
+
+    /**
+     * Calculates the fingerprint and the combined natural analog fingerprint for a given HELM notation like
+     * {@link #calculateFingerprints(HELM2Notation)}, with the parameters of the given configuration.
+     *
+     * @param notation Input HELM notation that is translated into fingerprints
+     * @param config the fingerprint configuration
+     * @return both fingerprints
+     * @throws Exception if anything goes wrong
+     */
+    public static FingerprintPair calculateFingerprints(HELM2Notation notation, FingerprintConfig config)
+            throws Exception {
+        return calculateFingerprints(MoleculeGraphUtils.buildCompactMoleculeGraph(notation.getListOfPolymers(),
+                notation.getListOfConnections()), config, System.nanoTime());
+    }
+
+    /**
+     * Calculates the fingerprint and the combined natural analog fingerprint of a HELM string like
+     * {@link #calculateFingerprints(HELM2Notation, FingerprintConfig)}. Common notations are read directly into
+     * the molecule graph, see {@link HELM2Object#makeMoleculeGraph(String)}.
+     *
+     * @param helm Input HELM string that is translated into fingerprints
+     * @param config the fingerprint configuration
+     * @return both fingerprints
+     * @throws Exception if anything goes wrong
+     */
+    public static FingerprintPair calculateFingerprints(String helm, FingerprintConfig config) throws Exception {
+        return calculateFingerprints(HELM2Object.makeMoleculeGraph(helm), config, System.nanoTime());
+    }
+
+    /**
+     * Calculates both fingerprints of a molecule graph.
+     *
+     * @param molecule the molecule graph
+     * @param config the fingerprint configuration
+     * @param startTime value of {@link System#nanoTime()} at which the time limit of the path budget started
+     * @return both fingerprints
+     * @throws Exception if anything goes wrong
+     */
+    static FingerprintPair calculateFingerprints(MoleculeGraph molecule, FingerprintConfig config, long startTime)
+            throws Exception {
         PathGenerator pathGenerator = new PathGenerator();
-        Set<String> allPaths;
-        Set<String> allNaturalPaths;
-        BitSet fingerprint;
-        BitSet fingerprintNatural;
+        HashingVisitor visitor = new HashingVisitor(pathGenerator, config, null);
+        HashingVisitor naturalVisitor = new HashingVisitor(pathGenerator, config, visitor);
 
-        molecule = MoleculeGraphUtils.buildMoleculeGraph(notation.getListOfPolymers(), notation.getListOfConnections());
+        int pathLength = visitPaths(pathGenerator, molecule, config, startTime, visitor, naturalVisitor);
+        naturalVisitor.addBits(visitor);
 
-        pathGenerator.findPaths(molecule);
-        allPaths = pathGenerator.getPaths();
-        allNaturalPaths = pathGenerator.getNaturalPaths();
+        return new FingerprintPair(HelmFingerprint.wrapWords(visitor.getWords(pathLength)),
+                HelmFingerprint.wrapWords(naturalVisitor.getWords(pathLength)), pathLength,
+                pathLength < config.getMaxPathLength());
+    }
 
-        fingerprint = getHashedFingerprint(allPaths);
-        fingerprintNatural = getHashedFingerprint(allNaturalPaths);
+    /**
+     * Calculates the fingerprints for a given HELM notation like
+     * {@link #calculateFingerprints(HELM2Notation, FingerprintConfig)} for every maximal path length from 1 to the
+     * one of the configuration, from one path enumeration. The shortest path of every bit is recorded, so a bit is
+     * set in the fingerprints of all lengths from that path on. If the path budget is exceeded, the fingerprints
+     * of the lengths above the reached one are the truncated fingerprints of the reached length.
+     *
+     * @param notation Input HELM notation that is translated into fingerprints
+     * @param config the fingerprint configuration
+     * @return both fingerprints for every maximal path length, the fingerprints of length n at index n - 1
+     * @throws Exception if anything goes wrong
+     */
+    public static FingerprintPair[] calculateFingerprintsByPathLength(HELM2Notation notation,
+                                                                      FingerprintConfig config) throws Exception {
+        MoleculeGraph molecule;
+        PathGenerator pathGenerator = new PathGenerator();
+        HashingVisitor visitor = new HashingVisitor(pathGenerator, config, null);
+        HashingVisitor naturalVisitor = new HashingVisitor(pathGenerator, config, visitor);
+        int maxPathLength = config.getMaxPathLength();
 
-        fingerprintNatural.or(fingerprint);
+        molecule = MoleculeGraphUtils.buildCompactMoleculeGraph(notation.getListOfPolymers(),
+                notation.getListOfConnections());
 
-        pathGenerator.clearPaths();
-        allPaths.clear();
-        allNaturalPaths.clear();
+        int reachedLength = visitPaths(pathGenerator, molecule, config, System.nanoTime(), visitor,
+                naturalVisitor);
+        naturalVisitor.addBits(visitor);
 
-        return fingerprintNatural;
+        FingerprintPair[] fingerprints = new FingerprintPair[maxPathLength];
+        for (int length = 1; length <= reachedLength; length++) {
+            fingerprints[length - 1] = new FingerprintPair(HelmFingerprint.wrapWords(visitor.getWords(length)),
+                    HelmFingerprint.wrapWords(naturalVisitor.getWords(length)), length, false);
+        }
+        for (int length = reachedLength + 1; length <= maxPathLength; length++) {
+            FingerprintPair reached = fingerprints[reachedLength - 1];
+            fingerprints[length - 1] = new FingerprintPair(reached.getFingerprint(), reached.getNaturalFingerprint(),
+                    reachedLength, true);
+        }
+        return fingerprints;
+    }
+
+    /**
+     * Passes the paths of a molecule to the visitors within the path budget of the configuration. When the budget
+     * is exceeded, the visitors are cleared and the search is repeated with paths of one monomer less. The time
+     * limit holds for all searches of the molecule together: every search may take half of the time that is left,
+     * so a search that runs out of time still leaves time for the shorter paths. Paths of a single monomer are
+     * always searched completely, so every molecule gets a fingerprint.
+     *
+     * @param pathGenerator the generator that searches the paths
+     * @param molecule the molecule graph
+     * @param config the fingerprint configuration
+     * @param startTime value of {@link System#nanoTime()} at which the time limit of the budget started
+     * @param visitor the visitor of the original paths
+     * @param naturalVisitor the visitor of the natural paths, null if they are not needed
+     * @return the maximal number of monomers of the visited paths
+     * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
+     */
+    private static int visitPaths(PathGenerator pathGenerator, MoleculeGraph molecule, FingerprintConfig config,
+                                  long startTime, HashingVisitor visitor, HashingVisitor naturalVisitor)
+            throws NaturalAnalogException {
+        PathBudget budget = config.getPathBudget();
+        long timeLimit = budget.getTimeLimitNanos();
+        for (int pathLength = config.getMaxPathLength(); pathLength > 1; pathLength--) {
+            // The search stops when the time limit has passed since its start time, move the start time back so
+            // that it stops after half of the time that is left.
+            long now = System.nanoTime();
+            long searchTime = (timeLimit - (now - startTime)) / 2;
+            long searchStart = now - (timeLimit - searchTime);
+            if (pathGenerator.visitPaths(molecule, pathLength, budget, searchStart, visitor, naturalVisitor)) {
+                return pathLength;
+            }
+            visitor.clear();
+            if (naturalVisitor != null) {
+                naturalVisitor.clear();
+            }
+            LOG.debug("Path budget exceeded for paths of {} monomers.", pathLength);
+        }
+        pathGenerator.visitPaths(molecule, 1, PathBudget.UNLIMITED, System.nanoTime(), visitor, naturalVisitor);
+        return 1;
+    }
+
+    /**
+     * Calculates the fingerprint for a given HELM notation like {@link #calculateFingerprint(HELM2Notation)}.
+     *
+     * @param notation Input HELM notation that is translated into a fingerprint
+     * @return HelmFingerprint of size 1024
+     * @throws Exception if anything goes wrong
+     */
+    public static HelmFingerprint calculateHelmFingerprint(HELM2Notation notation) throws Exception {
+        return calculateHelmFingerprint(notation, FingerprintConfig.DEFAULT);
+    }
+
+    /**
+     * Calculates the fingerprint for a given HELM notation like
+     * {@link #calculateFingerprint(HELM2Notation, FingerprintConfig)}.
+     *
+     * @param notation Input HELM notation that is translated into a fingerprint
+     * @param config the fingerprint configuration
+     * @return HelmFingerprint
+     * @throws Exception if anything goes wrong
+     */
+    public static HelmFingerprint calculateHelmFingerprint(HELM2Notation notation, FingerprintConfig config)
+            throws Exception {
+        return HelmFingerprint.fromBitSet(calculateFingerprint(notation, config), config.getSize());
+    }
+
+    /**
+     * Calculates a combined fingerprint for a given HELM notation like
+     * {@link #calculateFingerprintNaturalAnalogs(HELM2Notation)}.
+     *
+     * @param notation Input HELM notation that is translated into a fingerprint
+     * @return HelmFingerprint of size 1024
+     * @throws Exception if anything goes wrong
+     */
+    public static HelmFingerprint calculateHelmFingerprintNaturalAnalogs(HELM2Notation notation) throws Exception {
+        return calculateHelmFingerprintNaturalAnalogs(notation, FingerprintConfig.DEFAULT);
+    }
+
+    /**
+     * Calculates a combined fingerprint for a given HELM notation like
+     * {@link #calculateFingerprintNaturalAnalogs(HELM2Notation, FingerprintConfig)}.
+     *
+     * @param notation Input HELM notation that is translated into a fingerprint
+     * @param config the fingerprint configuration
+     * @return HelmFingerprint
+     * @throws Exception if anything goes wrong
+     */
+    public static HelmFingerprint calculateHelmFingerprintNaturalAnalogs(HELM2Notation notation,
+                                                                         FingerprintConfig config) throws Exception {
+        return calculateFingerprints(notation, config).getNaturalFingerprint();
+    }
+
+    /**
+     * Calculates the fingerprints of many HELM notations in parallel on the executor of the options. An exception
+     * of one notation does not stop the calculation, it is stored in the result of that notation.
+     *
+     * @param notations Input HELM notations that are translated into fingerprints
+     * @param options the fingerprint configuration and executor
+     * @return one result for each notation, in the order of the input
+     * @throws InterruptedException if the current thread is interrupted while waiting for the results
+     */
+    public static List<FingerprintResult> calculateFingerprints(List<HELM2Notation> notations,
+                                                                FingerprintOptions options)
+            throws InterruptedException {
+        return FingerprintBatch.calculate(notations, options);
+    }
+
+    /**
+     * Calculates the fingerprints of a stream of HELM notations like
+     * {@link #calculateFingerprints(List, FingerprintOptions)}. The notations are read in batches while the results
+     * are consumed, so only a bounded number of them is in memory at the same time.
+     *
+     * @param notations Input HELM notations that are translated into fingerprints
+     * @param options the fingerprint configuration and executor
+     * @return iterator over one result for each notation, in the order of the input
+     */
+    public static Iterator<FingerprintResult> calculateFingerprints(Iterator<HELM2Notation> notations,
+                                                                    FingerprintOptions options) {
+        return FingerprintBatch.calculate(notations, options);
+    }
+
+    /**
+     * Calculates the fingerprints of a stream of HELM strings like
+     * {@link #calculateFingerprints(Iterator, FingerprintOptions)}, without creating a HELM2Notation for the
+     * common notations. A string that cannot be parsed stores its exception in its result.
+     *
+     * @param helms Input HELM strings that are translated into fingerprints
+     * @param options the fingerprint configuration and executor
+     * @return iterator over one result for each HELM string, in the order of the input
+     */
+    public static Iterator<FingerprintResult> calculateFingerprintsFromHelm(Iterator<String> helms,
+                                                                            FingerprintOptions options) {
+        PersistentFingerprintCache cache = options.getCache();
+        FingerprintBatch.Calculation<String> calculation =
+                cache != null ? cache::get : Fingerprinter::calculateFingerprints;
+        return FingerprintBatch.calculate(helms, calculation, options);
     }
 
     /**
@@ -109,94 +353,128 @@ public class Fingerprinter {
      * @throws NoSuchAlgorithmException if anything goes wrong
      */
     public static BitSet getHashedFingerprint(Set<String> totalPaths) throws NoSuchAlgorithmException {
-        BitSet bitSet = new BitSet(size);
+        return getHashedFingerprint(totalPaths, FingerprintConfig.DEFAULT);
+    }
+
+    /**
+     *
+     * @param totalPaths Set of paths based on the monomers of a HELM notation
+     * @param config the fingerprint configuration
+     * @return bit set fingerprint
+     * @throws NoSuchAlgorithmException if anything goes wrong
+     */
+    public static BitSet getHashedFingerprint(Set<String> totalPaths, FingerprintConfig config)
+            throws NoSuchAlgorithmException {
+        BitSet bitSet = new BitSet(config.getSize());
+        PathHasher hasher = HASHER.get();
+        BitPositionCache bitPositions = BitPositionCache.getInstance(config.getHashFunction());
+        int mask = config.getSize() - 1;
 
         LOG.debug("Calculation of fingerprint started.");
         for(String path: totalPaths){
-            bitSet.set(getBitposFromHashcode(path));
+            bitSet.set(bitPositions.getBitPosition(path, hasher) & mask);
         }
         LOG.debug("Calculation of fingerprint successful.");
         return bitSet;
     }
 
     /**
+     * Folds a fingerprint down to a smaller size by combining its blocks of the new size with the or-operator.
+     * As the bit position of a path in the smaller fingerprint is its position in the larger one modulo the
+     * smaller size, the result equals the fingerprint that is calculated with the smaller size directly.
      *
-     * @param path The monomer path that is mapped to a bit position
-     * @return int bit position
-     * @throws NoSuchAlgorithmException if anything goes wrong
+     * @param fingerprint the fingerprint to be folded
+     * @param size the size of the fingerprint
+     * @param newSize the size of the folded fingerprint, a power of two between 64 and size
+     * @return folded bit set fingerprint
      */
-    private static int getBitposFromHashcode(String path) throws NoSuchAlgorithmException {
-        // Creates a message digest with the SHA-256 algorithm.
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        // Performs a final update on the digest using an array of the path (encoded to
-        // a bytearray), then completes the digest computation.
-        byte[] hash = digest.digest(path.getBytes(StandardCharsets.UTF_8));
-        // Converts byte array to hexadecimal string.
-        String hashString = DatatypeConverter.printHexBinary(hash);
-        // Converts hexadecimal string to bitSet.
-        BitSet pathBitSet = BitSet.valueOf(DatatypeConverter.parseHexBinary(hashString));
-        pathBitSet = foldBitSet(pathBitSet);
-        return getDecimalFromBitSet(pathBitSet);
+    public static BitSet foldFingerprint(BitSet fingerprint, int size, int newSize) {
+        FingerprintConfig.checkSize(size);
+        FingerprintConfig.checkSize(newSize);
+        if (newSize > size) {
+            throw new IllegalArgumentException("Cannot fold a fingerprint of size " + size + " to " + newSize + ".");
+        }
+        if (fingerprint.length() > size) {
+            throw new IllegalArgumentException("Fingerprint has bits beyond its size of " + size + ".");
+        }
+
+        BitSet folded = new BitSet(newSize);
+        for (int bit = fingerprint.nextSetBit(0); bit >= 0; bit = fingerprint.nextSetBit(bit + 1)) {
+            folded.set(bit & (newSize - 1));
+        }
+        return folded;
     }
 
     /**
-     *
-     * @param bitSet input bit set fingerprint
-     * @return int converted from bit set hash
+     * HashingVisitor class maps every path that it has not seen before to its bit position with the
+     * {@link BitPositionCache} and records the number of monomers of the shortest path of every bit, so the
+     * fingerprints of all shorter maximal path lengths can be taken from one search. Only the 64 bit keys of the
+     * paths are kept, not their strings.
      */
-    private static int getDecimalFromBitSet(BitSet bitSet) {
-        if (bitSet.isEmpty()) {
-            return 0;
-        } else {
-            StringBuilder s = new StringBuilder();
-            for (int i = 0; i < bitSet.size(); i++) {
-                s.append(bitSet.get(i) ? 1 : 0);
-            }
+    private static final class HashingVisitor implements PathVisitor {
+        private final PathGenerator pathGenerator;
+        private final PathHasher hasher = HASHER.get();
+        private final BitPositionCache bitPositions;
+        private final int mask;
+        private final LongHashSet keys = new LongHashSet();
+        // Visitor whose bits are added to this fingerprint anyway, its paths do not have to be hashed again.
+        private final HashingVisitor includedVisitor;
+        // Number of monomers of the shortest path of every bit, 0 if no path is hashed to the bit.
+        private final byte[] lengths;
 
-            String str = s.toString();
-            str = str.substring(0, 10);
+        HashingVisitor(PathGenerator pathGenerator, FingerprintConfig config, HashingVisitor includedVisitor)
+                throws NoSuchAlgorithmException {
+            this.pathGenerator = pathGenerator;
+            this.bitPositions = BitPositionCache.getInstance(config.getHashFunction());
+            this.mask = config.getSize() - 1;
+            this.includedVisitor = includedVisitor;
+            this.lengths = new byte[config.getSize()];
+            bitPositions.load(pathGenerator.getNaturalAnalogs(), hasher);
+        }
 
-            int decimal = 0;
-            int base0 = (int) '0';
-            for (int i = 0; i < str.length(); i++) {
-                decimal = decimal * 2 + ((int) str.charAt(i) - base0);
+        @Override
+        public void onPath(int[] monomerIds, int length, long key) {
+            if ((includedVisitor != null && includedVisitor.keys.contains(key)) || !keys.add(key)) {
+                return;
+            }
+            int bit;
+            try {
+                bit = bitPositions.getBitPosition(pathGenerator, monomerIds, length, key, hasher) & mask;
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            if (lengths[bit] == 0 || length < lengths[bit]) {
+                lengths[bit] = (byte) length;
             }
-            return decimal;
         }
-    }
-
-    /**
-     * Function applies a folding-algorithm on a BitSet with the xor-operator until
-     * there are only 10 bit positions left that can represent an integer between 0
-     * and 1024.
-     **/
-    private static BitSet foldBitSet(BitSet pathBitSet) {
-        LOG.debug("Folding bit set...");
-        BitSet firstHalf = pathBitSet.get(0, pathBitSet.size() / 2);
-        BitSet secondHalf = pathBitSet.get(pathBitSet.size() / 2, pathBitSet.size());
-        BitSet temp = firstHalf;
-        int size = 128;
-
-        // BitSet is separated into two halves and the xor-operator is applied on it
-        // until it is of the size of 10.
-        while (size >= 10) {
-            firstHalf.xor(secondHalf);
 
-            temp = firstHalf;
-            firstHalf = temp.get(0, size / 2);
-            secondHalf = temp.get(size / 2, size);
+        /**
+         * Adds the bits of another visitor of the same configuration to this one.
+         */
+        void addBits(HashingVisitor other) {
+            for (int bit = 0; bit < lengths.length; bit++) {
+                if (other.lengths[bit] != 0 && (lengths[bit] == 0 || other.lengths[bit] < lengths[bit])) {
+                    lengths[bit] = other.lengths[bit];
+                }
+            }
+        }
 
-            size = size / 2;
+        /**
+         * Gets the words of the fingerprint of all paths with up to the given number of monomers.
+         */
+        long[] getWords(int maxPathLength) {
+            long[] words = new long[lengths.length / Long.SIZE];
+            for (int bit = 0; bit < lengths.length; bit++) {
+                if (lengths[bit] != 0 && lengths[bit] <= maxPathLength) {
+                    words[bit >>> 6] |= 1L << bit;
+                }
+            }
+            return words;
         }
 
-        // Size of BitSet is now 16, xor has to be applied on six more bits.
-        firstHalf = temp.get(0, 10);
-        secondHalf = temp.get(10, 16);
-        for (int i = 0; i < 6; i++) {
-            boolean xorValue = (firstHalf.get(i) || secondHalf.get(i)) && !(firstHalf.get(i) && secondHalf.get(i));
-            firstHalf.set(i, xorValue);
+        void clear() {
+            keys.clear();
+            Arrays.fill(lengths, (byte) 0);
         }
-        LOG.debug("Folding bit set successful.");
-        return firstHalf;
     }
 }
@@ -19,17 +19,25 @@ package org.pistoiaalliance.helm.HELMSimilarityLibrary;
 import org.helm.notation2.parser.ConverterHELM1ToHELM2;
 import org.helm.notation2.parser.ParserHELM2;
 import org.helm.notation2.parser.exceptionparser.ExceptionState;
+import org.helm.notation2.parser.exceptionparser.NotationException;
 import org.helm.notation2.parser.notation.HELM2Notation;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.HelmGraphParser;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraph;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraphUtils;
 
 /**
- * HELM2Object class to generate HELM2Notation object from HELM string
+ * HELM2Object class to generate HELM2Notation object from HELM string. The converter and
+ * parser of the HELM toolkit keep state while they read a notation, so every thread uses
+ * its own instances and notations can be parsed in parallel.
  *
  * @author bueltel
  */
 public class HELM2Object {
 
-	private static ConverterHELM1ToHELM2 converter = new ConverterHELM1ToHELM2();
-	private static ParserHELM2 parser = new ParserHELM2();
+	private static final String HELM2_VERSION = "V2.0";
+	private static final ThreadLocal<ConverterHELM1ToHELM2> CONVERTER =
+			ThreadLocal.withInitial(ConverterHELM1ToHELM2::new);
+	private static final ThreadLocal<ParserHELM2> PARSER = ThreadLocal.withInitial(ParserHELM2::new);
 
 	/**
 	 * Generates HELM2Notation object from HELM string
@@ -41,11 +49,34 @@ public class HELM2Object {
 	public static HELM2Notation makeHELM2NotationObject(String helm) throws ExceptionState {
 
 		HELM2Notation notation;
+		ParserHELM2 parser = PARSER.get();
 
-		helm = converter.doConvert(helm);
+		// HELM2 strings end with their version and need no conversion.
+		if(!helm.endsWith(HELM2_VERSION)) {
+			helm = CONVERTER.get().doConvert(helm);
+		}
 		parser.parse(helm);
 		notation = parser.getHELM2Notation();
 
 		return notation;
 	}
+
+	/**
+	 * Generates the compact moleculeGraph from HELM string. Common notations are read directly
+	 * by the {@link HelmGraphParser}, all others are parsed to a HELM2Notation object first.
+	 *
+	 * @param helm helmString
+	 * @return the compact moleculeGraph
+	 * @throws ExceptionState if the HELM string cannot be parsed
+	 * @throws NotationException if a connection refers to an unknown polymer
+	 */
+	public static MoleculeGraph makeMoleculeGraph(String helm) throws ExceptionState, NotationException {
+		MoleculeGraph moleculeGraph = HelmGraphParser.parse(helm);
+		if(moleculeGraph == null) {
+			HELM2Notation notation = makeHELM2NotationObject(helm);
+			moleculeGraph = MoleculeGraphUtils.buildCompactMoleculeGraph(notation.getListOfPolymers(),
+					notation.getListOfConnections());
+		}
+		return moleculeGraph;
+	}
 }
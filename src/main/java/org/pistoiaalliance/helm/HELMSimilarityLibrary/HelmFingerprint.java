@@ -0,0 +1,207 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * HelmFingerprint class is an immutable fingerprint of a fixed size that is backed by an
+ * array of longs. The number of set bits and the hash code are calculated once when the
+ * fingerprint is created, so comparing it against many other fingerprints does not
+ * count its bits again.
+ */
+public final class HelmFingerprint {
+
+    final long[] words;
+    private final int size;
+    private final int cardinality;
+    private final int hash;
+
+    private HelmFingerprint(long[] words, int size) {
+        this.words = words;
+        this.size = size;
+        int bitCount = 0;
+        for (long word : words) {
+            bitCount += Long.bitCount(word);
+        }
+        this.cardinality = bitCount;
+        this.hash = 31 * size + Arrays.hashCode(words);
+    }
+
+    /**
+     * Creates a fingerprint of the default size 1024 from a bit set.
+     *
+     * @param bitSet the bit set fingerprint
+     * @return HelmFingerprint
+     */
+    public static HelmFingerprint fromBitSet(BitSet bitSet) {
+        return fromBitSet(bitSet, FingerprintConfig.DEFAULT.getSize());
+    }
+
+    /**
+     * Creates a fingerprint of the given size from a bit set.
+     *
+     * @param bitSet the bit set fingerprint
+     * @param size the size of the fingerprint, a power of two between 64 and 16384
+     * @return HelmFingerprint
+     */
+    public static HelmFingerprint fromBitSet(BitSet bitSet, int size) {
+        FingerprintConfig.checkSize(size);
+        if (bitSet.length() > size) {
+            throw new IllegalArgumentException("Bit set has bits beyond the fingerprint size of " + size + ".");
+        }
+        long[] words = new long[size / Long.SIZE];
+        long[] bits = bitSet.toLongArray();
+        System.arraycopy(bits, 0, words, 0, bits.length);
+        return new HelmFingerprint(words, size);
+    }
+
+    /**
+     * Creates a fingerprint from a copy of the given words. Bit i of the fingerprint is
+     * bit i % 64 of word i / 64, like in {@link BitSet#valueOf(long[])}.
+     *
+     * @param words the words of the fingerprint, size / 64 of them
+     * @return HelmFingerprint
+     */
+    public static HelmFingerprint fromWords(long[] words) {
+        int size = words.length * Long.SIZE;
+        FingerprintConfig.checkSize(size);
+        return new HelmFingerprint(words.clone(), size);
+    }
+
+    /**
+     * Creates a fingerprint that takes ownership of the given words, the caller must not change them afterwards.
+     */
+    static HelmFingerprint wrapWords(long[] words) {
+        int size = words.length * Long.SIZE;
+        FingerprintConfig.checkSize(size);
+        return new HelmFingerprint(words, size);
+    }
+
+    /**
+     * @return a new bit set with the bits of this fingerprint
+     */
+    public BitSet toBitSet() {
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * @return a copy of the words of this fingerprint
+     */
+    public long[] toWords() {
+        return words.clone();
+    }
+
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * @return the number of set bits
+     */
+    public int getCardinality() {
+        return cardinality;
+    }
+
+    public boolean get(int bit) {
+        if (bit < 0 || bit >= size) {
+            throw new IndexOutOfBoundsException("bit " + bit + " is not in [0, " + size + ")");
+        }
+        return (words[bit >>> 6] & (1L << bit)) != 0;
+    }
+
+    /**
+     * Folds this fingerprint down to a smaller size, see
+     * {@link Fingerprinter#foldFingerprint(BitSet, int, int)}.
+     *
+     * @param newSize the size of the folded fingerprint, a power of two between 64 and the size of this fingerprint
+     * @return folded fingerprint
+     */
+    public HelmFingerprint fold(int newSize) {
+        FingerprintConfig.checkSize(newSize);
+        if (newSize > size) {
+            throw new IllegalArgumentException("Cannot fold a fingerprint of size " + size + " to " + newSize + ".");
+        }
+        if (newSize == size) {
+            return this;
+        }
+        long[] folded = new long[newSize / Long.SIZE];
+        for (int i = 0; i < words.length; i++) {
+            folded[i % folded.length] |= words[i];
+        }
+        return new HelmFingerprint(folded, newSize);
+    }
+
+    /**
+     * Counts the bits that are set in both fingerprints.
+     *
+     * @param other a fingerprint of the same size
+     * @return number of common bits
+     */
+    public int getCommonCardinality(HelmFingerprint other) {
+        checkSameSize(other);
+        int common = 0;
+        for (int i = 0; i < words.length; i++) {
+            common += Long.bitCount(words[i] & other.words[i]);
+        }
+        return common;
+    }
+
+    void checkSameSize(HelmFingerprint other) {
+        if (other.size != size) {
+            throw new IllegalArgumentException("Fingerprints of size " + size + " and " + other.size
+                    + " cannot be compared.");
+        }
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        HelmFingerprint other = (HelmFingerprint) o;
+        return size == other.size && hash == other.hash && cardinality == other.cardinality
+                && Arrays.equals(words, other.words);
+    }
+
+    @Override
+    public int hashCode() {
+        return hash;
+    }
+
+    /**
+     * Returns the set bits in the same format as {@link BitSet#toString()}, e.g. "{1, 5, 9}",
+     * so that fingerprints are stored in the database the same way as before.
+     */
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder(6 * cardinality + 2);
+        s.append('{');
+        for (int i = 0; i < words.length; i++) {
+            long word = words[i];
+            while (word != 0) {
+                if (s.length() > 1) {
+                    s.append(", ");
+                }
+                s.append(i * Long.SIZE + Long.numberOfTrailingZeros(word));
+                word &= word - 1;
+            }
+        }
+        return s.append('}').toString();
+    }
+}
@@ -0,0 +1,107 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * PathBudget class limits the path enumeration of one molecule: the number of paths from one
+ * monomer, the number of paths of the whole molecule and the time of the enumeration. Paths of
+ * several monomers are counted from both of their ends, single monomers are not counted. When
+ * a budget is exceeded, the fingerprint is calculated from shorter paths instead. The time
+ * limit holds for all enumerations of a molecule together. Instances are immutable, the
+ * with-methods return a modified copy.
+ */
+public final class PathBudget {
+
+    /**
+     * Budget without any limit, the default of {@link FingerprintConfig}.
+     */
+    public static final PathBudget UNLIMITED = new PathBudget(Long.MAX_VALUE, Long.MAX_VALUE, Long.MAX_VALUE);
+
+    private final long maxPathsPerRoot;
+    private final long maxTotalPaths;
+    private final long timeLimitMillis;
+
+    /**
+     * @param maxPathsPerRoot the maximal number of paths from one monomer
+     * @param maxTotalPaths the maximal number of paths of a molecule
+     * @param timeLimitMillis the maximal time of the path enumeration of a molecule in milliseconds
+     */
+    public PathBudget(long maxPathsPerRoot, long maxTotalPaths, long timeLimitMillis) {
+        if (maxPathsPerRoot < 1 || maxTotalPaths < 1 || timeLimitMillis < 1) {
+            throw new IllegalArgumentException("Path budget limits must be positive, but were " + maxPathsPerRoot
+                    + ", " + maxTotalPaths + " and " + timeLimitMillis + ".");
+        }
+        this.maxPathsPerRoot = maxPathsPerRoot;
+        this.maxTotalPaths = maxTotalPaths;
+        this.timeLimitMillis = timeLimitMillis;
+    }
+
+    public long getMaxPathsPerRoot() {
+        return maxPathsPerRoot;
+    }
+
+    public long getMaxTotalPaths() {
+        return maxTotalPaths;
+    }
+
+    public long getTimeLimitMillis() {
+        return timeLimitMillis;
+    }
+
+    /**
+     * @return the time limit in nanoseconds, Long.MAX_VALUE if it does not fit
+     */
+    public long getTimeLimitNanos() {
+        return TimeUnit.MILLISECONDS.toNanos(timeLimitMillis);
+    }
+
+    public PathBudget withMaxPathsPerRoot(long maxPathsPerRoot) {
+        return new PathBudget(maxPathsPerRoot, maxTotalPaths, timeLimitMillis);
+    }
+
+    public PathBudget withMaxTotalPaths(long maxTotalPaths) {
+        return new PathBudget(maxPathsPerRoot, maxTotalPaths, timeLimitMillis);
+    }
+
+    public PathBudget withTimeLimitMillis(long timeLimitMillis) {
+        return new PathBudget(maxPathsPerRoot, maxTotalPaths, timeLimitMillis);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        PathBudget other = (PathBudget) o;
+        return maxPathsPerRoot == other.maxPathsPerRoot && maxTotalPaths == other.maxTotalPaths
+                && timeLimitMillis == other.timeLimitMillis;
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * (31 * Long.hashCode(maxPathsPerRoot) + Long.hashCode(maxTotalPaths))
+                + Long.hashCode(timeLimitMillis);
+    }
+
+    @Override
+    public String toString() {
+        return "PathBudget[maxPathsPerRoot=" + maxPathsPerRoot + ", maxTotalPaths=" + maxTotalPaths
+                + ", timeLimitMillis=" + timeLimitMillis + "]";
+    }
+}
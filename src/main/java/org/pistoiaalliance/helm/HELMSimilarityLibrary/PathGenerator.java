@@ -16,125 +16,341 @@
  ******************************************************************************/
 package org.pistoiaalliance.helm.HELMSimilarityLibrary;
 
-import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
-import org.helm.notation2.Monomer;
-import org.helm.notation2.MonomerFactory;
-import org.helm.notation2.MonomerStore;
 import org.helm.notation2.exception.ChemistryException;
 import org.helm.notation2.exception.MonomerLoadingException;
 
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.exception.NaturalAnalogException;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Graph;
-import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Vertex;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.LongHashSet;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraph;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MonomerDictionary;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NaturalAnalogIndex;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /**
  *  PathGenerator class takes a moleculeGraph and finds all path from each
- *  monomer (vertex) up to a maximal length (searchDepth). Paths are
- *  found by depth first search.
+ *  monomer (vertex) up to a maximal length (searchDepth), the number of
+ *  monomers of the longest path. Paths are found by depth first search.
+ *  Optionally the length of every found path is recorded, so the paths of
+ *  every shorter maximal length can be taken from one search. Instead of
+ *  storing the paths, they can also be passed to a {@link PathVisitor}.
+ *  The found paths are stored per instance, so several generators can search
+ *  in parallel. A single instance must not be used by more than one thread at
+ *  a time.
  * 
  * @author bueltel
  *
  */
 public class PathGenerator {
-	private static int searchDepth = 6;
-	public static Set<String> totalPaths;
-	public static Set<String> totalNaturalPaths;
-	private static Map<String, Map<String, Monomer>> monStore;
-
-	final Logger LOG = LoggerFactory.getLogger(PathGenerator.class);
+	public static final int DEFAULT_SEARCH_DEPTH = 6;
+	public static final int MAX_SEARCH_DEPTH = 32;
+	// The time limit of a path budget is checked once every 1024 paths.
+	private static final int TIME_CHECK_MASK = 1023;
+	// Multiplier of the path hashes and its powers, the weight of a unit at each position of a path.
+	private static final long HASH_MULTIPLIER = 0x9E3779B97F4A7C15L;
+	private static final long[] HASH_POWERS = new long[MAX_SEARCH_DEPTH];
+	static {
+		HASH_POWERS[0] = 1;
+		for(int i = 1; i < MAX_SEARCH_DEPTH; i++) {
+			HASH_POWERS[i] = HASH_POWERS[i - 1] * HASH_MULTIPLIER;
+		}
+	}
+	public final Set<String> totalPaths;
+	public final Set<String> totalNaturalPaths;
+	private NaturalAnalogIndex naturalAnalogs;
+	// Monomers and path units interned to ids, the token of a unit id is its contribution to a path hash.
+	private final MonomerDictionary dictionary = MonomerDictionary.getInstance();
+	// Visitors that store the paths in totalPaths and totalNaturalPaths.
+	private final PathStore pathStore;
+	private final PathStore naturalPathStore;
+	private final StringBuilder forwardPath = new StringBuilder();
+	private final StringBuilder reversePath = new StringBuilder();
+
+	private static final Logger LOG = LoggerFactory.getLogger(PathGenerator.class);
 
 	public PathGenerator() {
+		this(false);
+	}
+
+	/**
+	 * @param recordPathLengths whether the number of monomers of every found path is recorded,
+	 *                          see {@link #getPathLengths()}
+	 */
+	public PathGenerator(boolean recordPathLengths) {
 		totalPaths = new HashSet<>();
 		totalNaturalPaths = new HashSet<>();
-		MonomerStore store;
+		pathStore = new PathStore(totalPaths, recordPathLengths);
+		naturalPathStore = new PathStore(totalNaturalPaths, recordPathLengths);
 		try {
-			store = MonomerFactory.getInstance().getMonomerStore();
-			monStore = store.getMonomerDB();
-		} catch (MonomerLoadingException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
-		} catch (ChemistryException e) {
-			// TODO Auto-generated catch block
-			e.printStackTrace();
+			naturalAnalogs = NaturalAnalogIndex.getInstance();
+		} catch (MonomerLoadingException | ChemistryException e) {
+			LOG.error("Could not load monomer store, natural analogs are not available.", e);
+			naturalAnalogs = NaturalAnalogIndex.EMPTY;
 		}
 	}
 
 	/**
-	 *  Calls depthFirstSearch for every monomer (vertex).
+	 *  Searches all paths from every monomer (vertex) with an iterative depth first search
+	 *  and stores them, see {@link #visitPaths(MoleculeGraph, int, PathBudget, long, PathVisitor, PathVisitor)}.
+	 *  Each path is identified by a hash of its units in both directions, the string of a path
+	 *  is only built the first time it is found.
 	 * @param moleculeGraph The moleculeGraph of a HELM notation
 	 * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
 	 */
 	public void findPaths(Graph moleculeGraph) throws NaturalAnalogException {
-		int numOfMonomers = moleculeGraph.getVertices().size();
+		findPaths(moleculeGraph, DEFAULT_SEARCH_DEPTH);
+	}
 
-		for(int i = 0; i < numOfMonomers; i++) {
-			Vertex rootVertex = new Vertex(moleculeGraph.getVertices().get(i));
-			String monomerUnit = rootVertex.getMonomer().getUnit();
-			String naturalAnalog = "";
-			List<String> currentOrigPathList = new ArrayList<>();
-			List<String> currentNatPathList = new ArrayList<>();
-
-			// Generate original path.
-//			// If vertex is RNA, get unique unit for RNA monomer.
-			if(rootVertex.hasUniqueUnit()) {
-				monomerUnit = monomerUnit.toLowerCase();
-			}
+	/**
+	 *  Searches all paths like {@link #findPaths(Graph)} up to the given number of monomers.
+	 * @param moleculeGraph The moleculeGraph of a HELM notation
+	 * @param searchDepth maximal number of monomers of a path, from 1 to 32
+	 * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
+	 */
+	public void findPaths(Graph moleculeGraph, int searchDepth) throws NaturalAnalogException {
+		findPaths(moleculeGraph, searchDepth, PathBudget.UNLIMITED, System.nanoTime());
+	}
 
-			String currentOrigPath = monomerUnit;
-			// The original path list is to keep track of the length of path in terms of monomers.
-			currentOrigPathList.add(monomerUnit);
+	/**
+	 *  Searches all paths like {@link #findPaths(Graph, int)} within a budget. The search stops as soon as
+	 *  the budget is exceeded, the paths that were found until then are kept and have to be cleared with
+	 *  {@link #clearPaths()} before searching again.
+	 * @param moleculeGraph The moleculeGraph of a HELM notation
+	 * @param searchDepth maximal number of monomers of a path, from 1 to 32
+	 * @param budget the budget of the search
+	 * @param startTime value of {@link System#nanoTime()} at which the time limit of the budget started
+	 * @return true if all paths were found, false if the search stopped because the budget was exceeded
+	 * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
+	 */
+	public boolean findPaths(Graph moleculeGraph, int searchDepth, PathBudget budget, long startTime)
+			throws NaturalAnalogException {
+		return findPaths(MoleculeGraph.fromGraph(moleculeGraph), searchDepth, budget, startTime);
+	}
 
-			// Generate path with natural analogs.
-			// Remove squared brackets to be able to compare non-natural analog with monomer store.
-			if(rootVertex.isNonNatural()) {
-				monomerUnit = monomerUnit.substring(1, monomerUnit.length()-1);
+	/**
+	 *  Searches all paths of a compact moleculeGraph like {@link #findPaths(Graph)}.
+	 * @param moleculeGraph The compact moleculeGraph of a HELM notation
+	 * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
+	 */
+	public void findPaths(MoleculeGraph moleculeGraph) throws NaturalAnalogException {
+		findPaths(moleculeGraph, DEFAULT_SEARCH_DEPTH, PathBudget.UNLIMITED, System.nanoTime());
+	}
 
-				// Get natural analog of peptide monomer.
-				if(rootVertex.isPeptide()) {
-					naturalAnalog = getNaturalPeptide(monomerUnit);
-				}
+	/**
+	 *  Searches all paths of a compact moleculeGraph like {@link #findPaths(Graph, int, PathBudget, long)}.
+	 * @param moleculeGraph The compact moleculeGraph of a HELM notation
+	 * @param searchDepth maximal number of monomers of a path, from 1 to 32
+	 * @param budget the budget of the search
+	 * @param startTime value of {@link System#nanoTime()} at which the time limit of the budget started
+	 * @return true if all paths were found, false if the search stopped because the budget was exceeded
+	 * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
+	 */
+	public boolean findPaths(MoleculeGraph moleculeGraph, int searchDepth, PathBudget budget, long startTime)
+			throws NaturalAnalogException {
+		return visitPaths(moleculeGraph, searchDepth, budget, startTime, pathStore, naturalPathStore);
+	}
 
-				// Get natural analog of RNA monomer.
-				if(rootVertex.isRNA()) {
-					naturalAnalog = getNaturalRNA(monomerUnit);
-				}
+	/**
+	 *  Passes all paths up to the given number of monomers to the visitors, without storing them.
+	 *  See {@link #visitPaths(MoleculeGraph, int, PathBudget, long, PathVisitor, PathVisitor)}.
+	 * @param moleculeGraph The moleculeGraph of a HELM notation
+	 * @param searchDepth maximal number of monomers of a path, from 1 to 32
+	 * @param visitor the visitor of the original paths
+	 * @param naturalVisitor the visitor of the natural paths, null if they are not needed
+	 * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
+	 */
+	public void visitPaths(Graph moleculeGraph, int searchDepth, PathVisitor visitor, PathVisitor naturalVisitor)
+			throws NaturalAnalogException {
+		visitPaths(MoleculeGraph.fromGraph(moleculeGraph), searchDepth, PathBudget.UNLIMITED, System.nanoTime(),
+				visitor, naturalVisitor);
+	}
 
-				// No need for natural analog of CHEM.
-				if(rootVertex.isChem()) {
-					naturalAnalog = rootVertex.getMonomer().getUnit();
-				}
+	/**
+	 *  Searches all paths from every monomer (vertex) with an iterative depth first search and
+	 *  passes each of them to the visitors as it is found. The search runs on the neighbour
+	 *  array of the compact graph, the unit ids of every vertex are taken from the
+	 *  {@link MonomerDictionary} once before the search. A path is passed as the unit ids of its
+	 *  monomers, see {@link #getUnit(int)} and {@link #getPath(int[], int)}, together with its key.
+	 *  The keys of both orientations are updated with every monomer that is added to the path,
+	 *  so a key takes constant time, see {@link #getPathKey(int[], int)}.
+	 *  A path is only visited from the end with the smaller vertex index, so every path of the
+	 *  molecule is visited exactly once. Paths with the same units are visited once for each
+	 *  place they occur at. The search stops as soon as the budget is exceeded.
+	 * @param moleculeGraph The compact moleculeGraph of a HELM notation
+	 * @param searchDepth maximal number of monomers of a path, from 1 to 32
+	 * @param budget the budget of the search
+	 * @param startTime value of {@link System#nanoTime()} at which the time limit of the budget started
+	 * @param visitor the visitor of the original paths
+	 * @param naturalVisitor the visitor of the natural paths, null if they are not needed
+	 * @return true if all paths were visited, false if the search stopped because the budget was exceeded
+	 * @throws NaturalAnalogException if natural analog of a modified monomer cannot be found
+	 */
+	public boolean visitPaths(MoleculeGraph moleculeGraph, int searchDepth, PathBudget budget, long startTime,
+							  PathVisitor visitor, PathVisitor naturalVisitor) throws NaturalAnalogException {
+		if(searchDepth < 1 || searchDepth > MAX_SEARCH_DEPTH) {
+			throw new IllegalArgumentException("Search depth must be between 1 and " + MAX_SEARCH_DEPTH
+					+ ", but was " + searchDepth + ".");
+		}
+		int numOfMonomers = moleculeGraph.getVertexCount();
+		int[] ids = new int[numOfMonomers];
+		int[] naturalIds = new int[numOfMonomers];
+		long[] tokens = new long[numOfMonomers];
+		long[] naturalTokens = new long[numOfMonomers];
+
+		for(int i = 0; i < numOfMonomers; i++) {
+			int monomerId = moleculeGraph.getMonomerId(i);
+			ids[i] = dictionary.getUnitId(monomerId);
+			tokens[i] = dictionary.getToken(ids[i]);
+			if(naturalVisitor != null) {
+				naturalIds[i] = dictionary.getNaturalUnitId(monomerId, naturalAnalogs);
+				naturalTokens[i] = dictionary.getToken(naturalIds[i]);
+			}
+		}
+
+		boolean[] visited = new boolean[numOfMonomers];
+		// Vertex, position of the next neighbour to visit and unit ids of the path for every depth of the search.
+		int[] pathVertices = new int[searchDepth];
+		int[] nextNeighbour = new int[searchDepth];
+		int[] pathIds = new int[searchDepth];
+		int[] naturalPathIds = new int[searchDepth];
+		// Hashes of the path read from the root and read towards the root for every depth of the search.
+		long[] forwardHashes = new long[searchDepth];
+		long[] reverseHashes = new long[searchDepth];
+		long[] naturalForwardHashes = new long[searchDepth];
+		long[] naturalReverseHashes = new long[searchDepth];
+		long maxPathsPerRoot = budget.getMaxPathsPerRoot();
+		long maxTotalPaths = budget.getMaxTotalPaths();
+		long timeLimit = budget.getTimeLimitNanos();
+		long pathCount = 0;
+
+		for(int root = 0; root < numOfMonomers; root++) {
+			long rootPathCount = 0;
+			int depth = 0;
+			pathVertices[0] = root;
+			nextNeighbour[0] = moleculeGraph.getNeighbourStart(root);
+			visited[root] = true;
+			pathIds[0] = ids[root];
+			naturalPathIds[0] = naturalIds[root];
+			forwardHashes[0] = tokens[root];
+			reverseHashes[0] = tokens[root];
+			naturalForwardHashes[0] = naturalTokens[root];
+			naturalReverseHashes[0] = naturalTokens[root];
+			visitor.onPath(pathIds, 1, tokens[root]);
+			if(naturalVisitor != null) {
+				naturalVisitor.onPath(naturalPathIds, 1, naturalTokens[root]);
 			}
-			else {
-				// If vertex is RNA, get unique unit for natural RNA monomer.
-				if(rootVertex.hasUniqueUnit()) {
-					naturalAnalog = rootVertex.getMonomer().getUnit().toLowerCase();
+
+			while(depth >= 0) {
+				int current = pathVertices[depth];
+				if(depth + 1 < searchDepth && nextNeighbour[depth] < moleculeGraph.getNeighbourEnd(current)) {
+					int neighbour = moleculeGraph.getNeighbour(nextNeighbour[depth]++);
+					if(visited[neighbour]) {
+						continue;
+					}
+					if(++rootPathCount > maxPathsPerRoot || ++pathCount > maxTotalPaths
+							|| ((pathCount & TIME_CHECK_MASK) == 0 && System.nanoTime() - startTime > timeLimit)) {
+						return false;
+					}
+					depth++;
+					pathVertices[depth] = neighbour;
+					nextNeighbour[depth] = moleculeGraph.getNeighbourStart(neighbour);
+					visited[neighbour] = true;
+					pathIds[depth] = ids[neighbour];
+					naturalPathIds[depth] = naturalIds[neighbour];
+					forwardHashes[depth] = forwardHashes[depth - 1] * HASH_MULTIPLIER + tokens[neighbour];
+					reverseHashes[depth] = reverseHashes[depth - 1] + tokens[neighbour] * HASH_POWERS[depth];
+					naturalForwardHashes[depth] = naturalForwardHashes[depth - 1] * HASH_MULTIPLIER
+							+ naturalTokens[neighbour];
+					naturalReverseHashes[depth] = naturalReverseHashes[depth - 1]
+							+ naturalTokens[neighbour] * HASH_POWERS[depth];
+					// Every path is found from both of its ends, only visit it from the end with the smaller index.
+					if(neighbour < root) {
+						continue;
+					}
+					visitor.onPath(pathIds, depth + 1, Math.min(forwardHashes[depth], reverseHashes[depth]));
+					if(naturalVisitor != null) {
+						naturalVisitor.onPath(naturalPathIds, depth + 1,
+								Math.min(naturalForwardHashes[depth], naturalReverseHashes[depth]));
+					}
 				}
 				else {
-					naturalAnalog = rootVertex.getMonomer().getUnit();
+					// All neighbours are visited or the path has its maximal length, go back one monomer.
+					visited[current] = false;
+					depth--;
 				}
 			}
+		}
+		return true;
+	}
 
-			String currentNatPath = naturalAnalog;
-			// The natural path list is to keep track of the length of path in terms of natural monomers
-			currentNatPathList.add(currentNatPath);
-			checkAndStorePath(currentOrigPath, currentOrigPathList, currentNatPath, currentNatPathList);
-			List<Boolean> visited = new ArrayList<>(Arrays.asList(new Boolean[numOfMonomers]));
-			depthFirstSearch(moleculeGraph, visited, i, currentOrigPath, currentOrigPathList, currentNatPath,
-					currentNatPathList, 0);
+	/**
+	 * @return the natural analogs of the monomer store that the natural paths are built from
+	 */
+	public NaturalAnalogIndex getNaturalAnalogs() {
+		return naturalAnalogs;
+	}
+
+	/**
+	 * Gets the unit of an id of {@link PathVisitor#onPath(int[], int, long)}.
+	 * @param unitId the id of the unit
+	 * @return the unit, as it appears in the paths
+	 */
+	public String getUnit(int unitId) {
+		return dictionary.getUnit(unitId);
+	}
+
+	/**
+	 * Gets the key of a path, a 64 bit hash of its units that is the same for both orientations of
+	 * the path. Paths of different units have different keys, except for very unlikely collisions.
+	 * It is the key that {@link #visitPaths} passes to the visitors along with the path.
+	 * @param unitIds the ids of the units of the path
+	 * @param length the number of monomers of the path
+	 * @return key of the path
+	 */
+	public long getPathKey(int[] unitIds, int length) {
+		long forwardHash = 0;
+		long reverseHash = 0;
+		for(int i = 0; i < length; i++) {
+			forwardHash = forwardHash * HASH_MULTIPLIER + dictionary.getToken(unitIds[i]);
+			reverseHash = reverseHash * HASH_MULTIPLIER + dictionary.getToken(unitIds[length - 1 - i]);
+		}
+		return Math.min(forwardHash, reverseHash);
+	}
+
+	/**
+	 * Gets the string of a path as it is stored by {@link #findPaths(Graph)}: the units of the path
+	 * concatenated in the orientation that is lexicographically smaller.
+	 * @param unitIds the ids of the units of the path
+	 * @param length the number of monomers of the path
+	 * @return path string
+	 */
+	public String getPath(int[] unitIds, int length) {
+		forwardPath.setLength(0);
+		reversePath.setLength(0);
+		for(int i = 0; i < length; i++) {
+			forwardPath.append(dictionary.getUnit(unitIds[i]));
+			reversePath.append(dictionary.getUnit(unitIds[length - 1 - i]));
 		}
+		return compare(forwardPath, reversePath) <= 0 ? forwardPath.toString() : reversePath.toString();
+	}
 
-		// print all paths
-//		printPaths();
+	private static int compare(CharSequence first, CharSequence second) {
+		int length = Math.min(first.length(), second.length());
+		for(int i = 0; i < length; i++) {
+			if(first.charAt(i) != second.charAt(i)) {
+				return first.charAt(i) - second.charAt(i);
+			}
+		}
+		return first.length() - second.length();
 	}
 
 	/**
@@ -145,149 +361,44 @@ public class PathGenerator {
 	 * @param newNatPath natural path to be checked
 	 * @param listNewNatPath list of natural path to be checked
 	 */
-	public static void checkAndStorePath(String newOrigPath, List<String> listNewOrigPath, String newNatPath,
-										 List<String> listNewNatPath) {
+	public void checkAndStorePath(String newOrigPath, List<String> listNewOrigPath, String newNatPath,
+								  List<String> listNewNatPath) {
 		List<String> listReverseOrigPath = new LinkedList<>(listNewOrigPath);
 		Collections.reverse(listReverseOrigPath);
-		String reverseOrigPath = String.join("", listReverseOrigPath);
-
-		// Check if current path is palindrome of existing path, only store the
-		// lexicographical minimum of both path.
-		if(totalPaths.contains(reverseOrigPath)) {
-			for(int i = 0; i < reverseOrigPath.length(); i++) {
-				if(reverseOrigPath.charAt(i) == (newOrigPath.charAt(i))) {
-					continue;
-				}
-				else if (reverseOrigPath.charAt(i) < (newOrigPath.charAt(i))) {
-					break;
-				}
-				else {
-					totalPaths.remove(reverseOrigPath);
-					totalPaths.add(newOrigPath);
-					break;
-				}
-			}
-		}
-		else {
-			totalPaths.add(newOrigPath);
-		}
+		checkAndStorePath(totalPaths, newOrigPath, String.join("", listReverseOrigPath));
 
 		List<String> listReverseNatPath = new LinkedList<>(listNewNatPath);
 		Collections.reverse(listReverseNatPath);
-		String reverseNatPath = String.join("", listReverseNatPath);
+		checkAndStorePath(totalNaturalPaths, newNatPath, String.join("", listReverseNatPath));
+	}
 
-		// Check the same for path with natural analogs.
-		if(totalNaturalPaths.contains(reverseNatPath)) {
-			for(int i = 0; i < reverseNatPath.length(); i++) {
-				if(reverseNatPath.charAt(i) == (newNatPath.charAt(i))) {
+	/**
+	 * Stores a path, or its reverse path if that is already stored and lexicographically
+	 * smaller.
+	 * @param paths the set of paths
+	 * @param newPath path to be stored
+	 * @param reversePath the path with its monomers in reverse order
+	 */
+	private static void checkAndStorePath(Set<String> paths, String newPath, String reversePath) {
+		// Check if current path is palindrome of existing path, only store the
+		// lexicographical minimum of both path.
+		if(paths.contains(reversePath)) {
+			for(int i = 0; i < reversePath.length(); i++) {
+				if(reversePath.charAt(i) == (newPath.charAt(i))) {
 					continue;
 				}
-				else if (reverseNatPath.charAt(i) < (newNatPath.charAt(i))) {
+				else if (reversePath.charAt(i) < (newPath.charAt(i))) {
 					break;
 				}
 				else {
-					totalNaturalPaths.remove(reverseNatPath);
-					totalNaturalPaths.add(newNatPath);
+					paths.remove(reversePath);
+					paths.add(newPath);
 					break;
 				}
 			}
 		}
 		else {
-			totalNaturalPaths.add(newNatPath);
-		}
-	}
-
-
-	/**
-	 * DepthFirstSearch through moleculeGraph from a startvertex.
-	 *
-	 * @param polymerGraph moleculegraph of a polymer
-	 * @param visited list of visited monomer indices
-	 * @param rootVertexIdx the start vertex of this loop
-	 * @param currentOrigPath the current original path
-	 * @param currentOrigPathList the current original path list
-	 * @param currentNatPath the current natural path
-	 * @param currentNatPathList the current natural path list
-	 * @param currentDepth the current search depth
-	 */
-	private void depthFirstSearch(Graph polymerGraph, List<Boolean> visited, int rootVertexIdx, String currentOrigPath,
-								  List<String> currentOrigPathList, String currentNatPath,
-								  List<String> currentNatPathList, int currentDepth) {
-		currentDepth++;
-		Vertex rootVertex = new Vertex(polymerGraph.getVertices().get(rootVertexIdx));
-		List<Vertex> neighbourVertices = rootVertex.getNeighbourList();
-
-		for(int i = 0; i < neighbourVertices.size(); i++) {
-			if (currentDepth == 1) {
-				Collections.fill(visited, false);
-				visited.set(rootVertexIdx, true);
-			}
-
-			if(!visited.get(neighbourVertices.get(i).getIndex())) {
-
-				Vertex neighbourVertex = new Vertex(neighbourVertices.get(i));
-				String naturalAnalog = "";
-				String monomerUnit = neighbourVertex.getMonomer().getUnit();
-
-				// Generate original path.
-				// Get unique units for natural RNA monomers.
-				if(neighbourVertex.hasUniqueUnit()) {
-					monomerUnit = monomerUnit.toLowerCase();
-				}
-				String newOrigPath = currentOrigPath + monomerUnit;
-				// The original path list is to keep track of the length of path in terms of monomers.
-				currentOrigPathList.add(monomerUnit);
-
-				// Generate path with natural analogs.
-				// Remove squared brackets to be able to compare non-natural analog with monomer store.
-				if(neighbourVertex.isNonNatural()) {
-					monomerUnit = monomerUnit.substring(1, monomerUnit.length()-1);
-
-					// Get natural analog of peptide monomer.
-					if(neighbourVertex.isPeptide()) {
-						naturalAnalog = getNaturalPeptide(monomerUnit);
-					}
-
-					// Get natural analog of RNA monomer.
-					else if(neighbourVertex.isRNA()) {
-						naturalAnalog = getNaturalRNA(monomerUnit);
-					}
-
-					//No need for natural analog of CHEM.
-					else if(neighbourVertex.isChem()) {
-						naturalAnalog = neighbourVertex.getMonomer().getUnit();
-					}
-				}
-				else {
-					// If vertex is RNA, get unique unit for natural RNA monomer.
-					if(neighbourVertex.hasUniqueUnit()) {
-						naturalAnalog = neighbourVertex.getMonomer().getUnit().toLowerCase();
-					}
-					else {
-						naturalAnalog = neighbourVertex.getMonomer().getUnit();
-					}
-				}
-
-				String newNatPath = currentNatPath + naturalAnalog;
-
-				// The natural path list is to keep track of the length of path in terms of monomers.
-				currentNatPathList.add(naturalAnalog);
-
-				// Recursive call of DFS.
-				if(currentDepth < searchDepth) {
-					checkAndStorePath(newOrigPath, currentOrigPathList, newNatPath, currentNatPathList);
-					visited.set(neighbourVertex.getIndex(), true);
-					depthFirstSearch(polymerGraph, visited, neighbourVertex.getIndex(), newOrigPath,
-							currentOrigPathList, newNatPath, currentNatPathList, currentDepth);
-					visited.set(neighbourVertex.getIndex(), false);
-					currentOrigPathList.remove(currentOrigPathList.size() - 1);
-					currentNatPathList.remove(currentNatPathList.size() - 1);
-				}
-				else {
-					currentOrigPathList.remove(currentOrigPathList.size() - 1);
-					currentNatPathList.remove(currentNatPathList.size() - 1);
-				}
-			}
+			paths.add(newPath);
 		}
 	}
 
@@ -299,19 +410,7 @@ public class PathGenerator {
 	 * @return natural analog string
 	 */
 	public String getNaturalPeptide(String monomerUnit) {
-		for(Map.Entry<String, Map<String, Monomer>> polymerType : monStore.entrySet()) {
-			if(polymerType.getKey().equalsIgnoreCase("Peptide")) {
-				Map<String, Monomer> peptideMap = polymerType.getValue();
-				for (Map.Entry<String, Monomer> monomer : peptideMap.entrySet()) {
-					if(monomer.getValue().getAlternateId().equalsIgnoreCase(monomerUnit)){
-						return monomer.getValue().getNaturalAnalog();
-					}
-				}
-			}
-		}
-		LOG.warn("Could not find natural analog to monomer");
-		return "[" + monomerUnit + "]";
-//		throw new NaturalAnalogException("Couldn't find natural analog to monomer");
+		return naturalAnalogs.getNaturalPeptide(monomerUnit);
 	}
 
 	/**
@@ -321,19 +420,7 @@ public class PathGenerator {
 	 * @return natural analog string
 	 */
 	public String getNaturalRNA(String monomerUnit) {
-		for(Map.Entry<String, Map<String, Monomer>> polymerType : monStore.entrySet()) {
-			if(polymerType.getKey().equalsIgnoreCase("RNA")) {
-				Map<String, Monomer> rnaMap = polymerType.getValue();
-				for (Map.Entry<String, Monomer> monomer: rnaMap.entrySet()) {
-					if(monomer.getValue().getAlternateId().equalsIgnoreCase(monomerUnit)) {
-						return monomer.getValue().getNaturalAnalog().toLowerCase();
-					}
-				}
-			}
-		}
-		LOG.warn("Could not find natural analog to monomer");
-		return "[" + monomerUnit + "]";
-//		throw new NaturalAnalogException("Couldn't find natural analog to monomer");
+		return naturalAnalogs.getNaturalRNA(monomerUnit);
 	}
 
 	public Set<String> getPaths(){
@@ -344,8 +431,68 @@ public class PathGenerator {
 		return totalNaturalPaths;
 	}
 
+	/**
+	 * @return number of monomers of every original path
+	 * @throws IllegalStateException if the generator does not record path lengths
+	 */
+	public Map<String, Integer> getPathLengths() {
+		return pathStore.getLengths();
+	}
+
+	/**
+	 * @return number of monomers of every natural path
+	 * @throws IllegalStateException if the generator does not record path lengths
+	 */
+	public Map<String, Integer> getNaturalPathLengths() {
+		return naturalPathStore.getLengths();
+	}
+
 	public void clearPaths() {
-		totalPaths.clear();
-		totalNaturalPaths.clear();
+		pathStore.clear();
+		naturalPathStore.clear();
+	}
+
+	/**
+	 * PathStore class stores each visited path that has not been found before in a set of paths.
+	 */
+	private final class PathStore implements PathVisitor {
+		private final Set<String> paths;
+		// Keys of the paths in the set.
+		private final LongHashSet keys = new LongHashSet();
+		// Number of monomers of the paths in the set, null if not recorded.
+		private final Map<String, Integer> lengths;
+
+		PathStore(Set<String> paths, boolean recordLengths) {
+			this.paths = paths;
+			this.lengths = recordLengths ? new HashMap<>() : null;
+		}
+
+		@Override
+		public void onPath(int[] monomerIds, int length, long key) {
+			if(!keys.add(key)) {
+				return;
+			}
+			String path = getPath(monomerIds, length);
+			paths.add(path);
+			if(lengths != null) {
+				// Different paths can have the same string, keep the shortest length.
+				lengths.merge(path, length, Math::min);
+			}
+		}
+
+		Map<String, Integer> getLengths() {
+			if(lengths == null) {
+				throw new IllegalStateException("Path lengths are not recorded by this generator.");
+			}
+			return lengths;
+		}
+
+		void clear() {
+			paths.clear();
+			keys.clear();
+			if(lengths != null) {
+				lengths.clear();
+			}
+		}
 	}
 }
@@ -0,0 +1,34 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+/**
+ * PathVisitor interface receives the monomer paths of a molecule while the {@link PathGenerator}
+ * enumerates them, so they can be consumed without storing all of them first.
+ */
+public interface PathVisitor {
+
+    /**
+     * Is called once for every path of the molecule. The array is reused for the following
+     * paths, so it must not be kept after the call.
+     *
+     * @param monomerIds the unit ids of the monomers of the path, see {@link PathGenerator#getUnit(int)}
+     * @param length the number of monomers of the path, only this many ids are valid
+     * @param key the key of the path, see {@link PathGenerator#getPathKey(int[], int)}
+     */
+    void onPath(int[] monomerIds, int length, long key);
+}
@@ -0,0 +1,432 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.helm.notation2.parser.notation.HELM2Notation;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NaturalAnalogIndex;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.PathHasher;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * PersistentFingerprintCache class stores fingerprint pairs in a file, so they are calculated
+ * only once across runs. A pair is keyed by a 128 bit hash of the normalized HELM string,
+ * seeded with the fingerprint size, hash function, maximal path length and the version of
+ * the monomer store, see {@link NaturalAnalogIndex#getVersion()}. A changed configuration or
+ * monomer store therefore never returns stale fingerprints.
+ * <p>
+ * The data file is append-only, every record holds the key, the path length and the words of
+ * both fingerprints. A second file with the extension ".idx" holds the key and the file offset
+ * of every record, it is read into memory when the cache is opened. Records that are missing
+ * in the index after a crash are indexed again and an incomplete last record is cut off.
+ * Only complete fingerprints are stored, fingerprints that were shortened by the path budget
+ * are calculated every time. All methods are thread-safe, a missing pair is calculated outside
+ * of the lock. The data file is locked while the cache is open, so it is written by one cache
+ * only, a second cache of the same file cannot be opened.
+ */
+public final class PersistentFingerprintCache implements Closeable {
+    private static final Logger LOG = LoggerFactory.getLogger(PersistentFingerprintCache.class);
+
+    private static final int DATA_MAGIC = 0x48465044;
+    private static final int INDEX_MAGIC = 0x48465049;
+    private static final int FORMAT_VERSION = 1;
+    private static final int FILE_HEADER_LENGTH = 8;
+    // First and second key, number of words of one fingerprint and path length.
+    private static final int RECORD_HEADER_LENGTH = 8 + 8 + 4 + 4;
+    // First and second key and record offset.
+    private static final int INDEX_ENTRY_LENGTH = 8 + 8 + 8;
+    private static final int MIN_CAPACITY = 1024;
+
+    private final FileChannel data;
+    private final FileChannel index;
+    private long dataLength;
+    // Open addressing table of the records by their first key, an offset of 0 marks a free slot.
+    private long[] firstKeys;
+    private long[] secondKeys;
+    private long[] offsets;
+    private int mask;
+    private int size;
+    private long hitCount;
+    private long missCount;
+
+    private PersistentFingerprintCache(FileChannel data, FileChannel index) {
+        this.data = data;
+        this.index = index;
+        resize(MIN_CAPACITY);
+    }
+
+    /**
+     * Opens the cache in the given file and its index, both are created if they do not exist.
+     * The data file stays locked until the cache is closed.
+     *
+     * @param file the data file of the cache
+     * @return the opened cache
+     * @throws IOException if the files cannot be read or written, are no fingerprint cache files
+     *         or are used by another open cache
+     */
+    public static PersistentFingerprintCache open(Path file) throws IOException {
+        Path indexFile = file.resolveSibling(file.getFileName() + ".idx");
+        FileChannel data = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        FileChannel index = null;
+        try {
+            lock(data, file);
+            index = FileChannel.open(indexFile, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            checkHeader(data, DATA_MAGIC, file);
+            checkHeader(index, INDEX_MAGIC, indexFile);
+            PersistentFingerprintCache cache = new PersistentFingerprintCache(data, index);
+            cache.load();
+            return cache;
+        } catch (IOException | RuntimeException e) {
+            data.close();
+            if (index != null) {
+                index.close();
+            }
+            throw e;
+        }
+    }
+
+    private static void lock(FileChannel channel, Path file) throws IOException {
+        FileLock lock;
+        try {
+            lock = channel.tryLock();
+        } catch (OverlappingFileLockException e) {
+            // The file is locked by another cache of this process.
+            lock = null;
+        }
+        if (lock == null) {
+            throw new IOException(file + " is used by another fingerprint cache.");
+        }
+    }
+
+    private static void checkHeader(FileChannel channel, int magic, Path file) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(FILE_HEADER_LENGTH);
+        if (channel.size() == 0) {
+            header.putInt(magic).putInt(FORMAT_VERSION).flip();
+            write(channel, header, 0);
+            return;
+        }
+        if (channel.size() < FILE_HEADER_LENGTH) {
+            throw new IOException(file + " is not a fingerprint cache file.");
+        }
+        read(channel, header, 0);
+        if (header.getInt() != magic || header.getInt() != FORMAT_VERSION) {
+            throw new IOException(file + " is not a fingerprint cache file of version " + FORMAT_VERSION + ".");
+        }
+    }
+
+    /**
+     * Reads the index and indexes the records that were appended after it.
+     */
+    private void load() throws IOException {
+        dataLength = data.size();
+        long indexLength = index.size();
+        long indexedEnd = FILE_HEADER_LENGTH;
+        long lastOffset = 0;
+        boolean consistent = (indexLength - FILE_HEADER_LENGTH) % INDEX_ENTRY_LENGTH == 0;
+        ByteBuffer entries = ByteBuffer.allocate(1024 * INDEX_ENTRY_LENGTH);
+        for (long position = FILE_HEADER_LENGTH; consistent && position < indexLength; ) {
+            entries.clear();
+            entries.limit((int) Math.min(entries.capacity(), indexLength - position));
+            read(index, entries, position);
+            position += entries.limit();
+            while (entries.hasRemaining()) {
+                long first = entries.getLong();
+                long second = entries.getLong();
+                long offset = entries.getLong();
+                // Records are appended, so the offsets of the index grow.
+                if (offset <= lastOffset || offset < FILE_HEADER_LENGTH || offset >= dataLength) {
+                    consistent = false;
+                    break;
+                }
+                put(first, second, offset);
+                lastOffset = offset;
+            }
+        }
+        if (consistent && lastOffset > 0) {
+            indexedEnd = getRecordEnd(lastOffset);
+            consistent = indexedEnd > 0;
+        }
+        if (!consistent) {
+            LOG.warn("Index of fingerprint cache is damaged, indexing all records again.");
+            resize(MIN_CAPACITY);
+            index.truncate(FILE_HEADER_LENGTH);
+            indexedEnd = FILE_HEADER_LENGTH;
+        }
+        indexRecords(indexedEnd);
+    }
+
+    /**
+     * Indexes the records from the given offset to the end of the data file.
+     */
+    private void indexRecords(long offset) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+        while (offset < dataLength) {
+            long end = getRecordEnd(offset);
+            if (end < 0) {
+                LOG.warn("Removing incomplete record at the end of fingerprint cache.");
+                data.truncate(offset);
+                dataLength = offset;
+                break;
+            }
+            header.clear();
+            read(data, header, offset);
+            long first = header.getLong();
+            long second = header.getLong();
+            put(first, second, offset);
+            entry.clear();
+            entry.putLong(first).putLong(second).putLong(offset).flip();
+            write(index, entry, index.size());
+            offset = end;
+        }
+    }
+
+    /**
+     * @return the offset after the record at the given offset, or -1 if the record is incomplete
+     */
+    private long getRecordEnd(long offset) throws IOException {
+        if (offset + RECORD_HEADER_LENGTH > dataLength) {
+            return -1;
+        }
+        ByteBuffer header = ByteBuffer.allocate(RECORD_HEADER_LENGTH);
+        read(data, header, offset);
+        int wordCount = header.getInt(16);
+        long end = offset + RECORD_HEADER_LENGTH + 2L * Long.BYTES * wordCount;
+        return wordCount > 0 && end <= dataLength ? end : -1;
+    }
+
+    /**
+     * Gets the fingerprints of a HELM string from the cache, or calculates and stores them.
+     *
+     * @param helm the HELM string
+     * @param config the fingerprint configuration
+     * @return both fingerprints
+     * @throws Exception if the fingerprints cannot be calculated or the cache cannot be accessed
+     */
+    public FingerprintPair get(String helm, FingerprintConfig config) throws Exception {
+        String key = FingerprintCache.normalize(helm);
+        long seed = getSeed(config);
+        byte[] bytes = key.getBytes(StandardCharsets.UTF_8);
+        long first = PathHasher.xxHash64(bytes, 0, bytes.length, seed);
+        long second = PathHasher.murmur3(bytes, 0, bytes.length, seed);
+        FingerprintPair pair = read(first, second, config.getSize());
+        if (pair == null) {
+            pair = Fingerprinter.calculateFingerprints(key, config);
+            write(first, second, pair);
+        }
+        return pair;
+    }
+
+    /**
+     * Gets the fingerprints of a notation from the cache, or calculates and stores them. The
+     * notation is keyed by its HELM2 string.
+     *
+     * @param notation the HELM notation
+     * @param config the fingerprint configuration
+     * @return both fingerprints
+     * @throws Exception if the fingerprints cannot be calculated or the cache cannot be accessed
+     */
+    public FingerprintPair get(HELM2Notation notation, FingerprintConfig config) throws Exception {
+        long seed = getSeed(config);
+        byte[] bytes = FingerprintCache.normalize(notation.toHELM2()).getBytes(StandardCharsets.UTF_8);
+        long first = PathHasher.xxHash64(bytes, 0, bytes.length, seed);
+        long second = PathHasher.murmur3(bytes, 0, bytes.length, seed);
+        FingerprintPair pair = read(first, second, config.getSize());
+        if (pair == null) {
+            pair = Fingerprinter.calculateFingerprints(notation, config);
+            write(first, second, pair);
+        }
+        return pair;
+    }
+
+    /**
+     * Gets the seed of the keys: everything but the HELM string that the fingerprints depend on.
+     */
+    private static long getSeed(FingerprintConfig config) throws Exception {
+        long seed = NaturalAnalogIndex.getInstance().getVersion();
+        seed = 31 * seed + config.getSize();
+        seed = 31 * seed + config.getHashFunction().name().hashCode();
+        seed = 31 * seed + config.getMaxPathLength();
+        return seed;
+    }
+
+    private synchronized FingerprintPair read(long first, long second, int fingerprintSize) throws IOException {
+        long offset = find(first, second);
+        int wordCount = fingerprintSize / Long.SIZE;
+        if (offset == 0) {
+            missCount++;
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + 2 * Long.BYTES * wordCount);
+        read(data, record, offset);
+        record.position(16);
+        if (record.getInt() != wordCount) {
+            throw new IOException("Fingerprint cache record at " + offset + " has a different size.");
+        }
+        int pathLength = record.getInt();
+        long[] words = new long[wordCount];
+        long[] naturalWords = new long[wordCount];
+        record.asLongBuffer().get(words).get(naturalWords);
+        hitCount++;
+        return new FingerprintPair(HelmFingerprint.wrapWords(words), HelmFingerprint.wrapWords(naturalWords),
+                pathLength, false);
+    }
+
+    private synchronized void write(long first, long second, FingerprintPair pair) throws IOException {
+        if (pair.isTruncated() || find(first, second) != 0) {
+            return;
+        }
+        long[] words = pair.getFingerprint().words;
+        long[] naturalWords = pair.getNaturalFingerprint().words;
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_LENGTH + 2 * Long.BYTES * words.length);
+        record.putLong(first).putLong(second).putInt(words.length).putInt(pair.getPathLength());
+        record.asLongBuffer().put(words).put(naturalWords);
+        record.clear();
+        long offset = dataLength;
+        write(data, record, offset);
+        dataLength += record.capacity();
+
+        ByteBuffer entry = ByteBuffer.allocate(INDEX_ENTRY_LENGTH);
+        entry.putLong(first).putLong(second).putLong(offset).flip();
+        write(index, entry, index.size());
+        put(first, second, offset);
+    }
+
+    private long find(long first, long second) {
+        for (int slot = getSlot(first); offsets[slot] != 0; slot = (slot + 1) & mask) {
+            if (firstKeys[slot] == first && secondKeys[slot] == second) {
+                return offsets[slot];
+            }
+        }
+        return 0;
+    }
+
+    private void put(long first, long second, long offset) {
+        int slot = getSlot(first);
+        while (offsets[slot] != 0) {
+            if (firstKeys[slot] == first && secondKeys[slot] == second) {
+                // A later record of the same key replaces the earlier one.
+                offsets[slot] = offset;
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+        firstKeys[slot] = first;
+        secondKeys[slot] = second;
+        offsets[slot] = offset;
+        if (++size > (mask + 1) * 3 / 4) {
+            long[] oldFirstKeys = firstKeys;
+            long[] oldSecondKeys = secondKeys;
+            long[] oldOffsets = offsets;
+            resize(2 * (mask + 1));
+            for (int i = 0; i < oldOffsets.length; i++) {
+                if (oldOffsets[i] != 0) {
+                    put(oldFirstKeys[i], oldSecondKeys[i], oldOffsets[i]);
+                }
+            }
+        }
+    }
+
+    private void resize(int capacity) {
+        firstKeys = new long[capacity];
+        secondKeys = new long[capacity];
+        offsets = new long[capacity];
+        mask = capacity - 1;
+        size = 0;
+    }
+
+    private int getSlot(long first) {
+        return (int) (first ^ (first >>> 32)) & mask;
+    }
+
+    private static void read(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int count = channel.read(buffer, position);
+            if (count < 0) {
+                throw new EOFException("Unexpected end of fingerprint cache file.");
+            }
+            position += count;
+        }
+        buffer.flip();
+    }
+
+    private static void write(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    /**
+     * @return the number of stored fingerprint pairs
+     */
+    public synchronized int size() {
+        return size;
+    }
+
+    /**
+     * @return the number of lookups that found their fingerprints in the cache
+     */
+    public synchronized long getHitCount() {
+        return hitCount;
+    }
+
+    /**
+     * @return the number of lookups that did not find their fingerprints in the cache
+     */
+    public synchronized long getMissCount() {
+        return missCount;
+    }
+
+    /**
+     * Writes all stored fingerprints to the storage device.
+     *
+     * @throws IOException if the files cannot be written
+     */
+    public synchronized void flush() throws IOException {
+        data.force(false);
+        index.force(false);
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "PersistentFingerprintCache[size=" + size + ", length=" + dataLength + ", hits=" + hitCount
+                + ", misses=" + missCount + "]";
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            // Closing the data file releases its lock.
+            data.close();
+        } finally {
+            index.close();
+        }
+    }
+}
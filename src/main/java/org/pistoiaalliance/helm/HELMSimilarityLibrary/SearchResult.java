@@ -0,0 +1,97 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary;
+
+import java.util.Arrays;
+
+/**
+ * SearchResult class holds the hits of a search in a {@link FingerprintIndex}: the ids of the
+ * hits and their similarities (tanimoto coefficients) to the query, ordered by descending
+ * similarity and, for the same similarity, by the order in which they were added to the index.
+ */
+public final class SearchResult {
+    private final int[] ids;
+    private final double[] scores;
+
+    SearchResult(int[] ids, double[] scores) {
+        this.ids = ids;
+        this.scores = scores;
+    }
+
+    /**
+     * @return the number of hits
+     */
+    public int size() {
+        return ids.length;
+    }
+
+    /**
+     * @param rank the position of the hit, 0 for the most similar one
+     * @return the id of the hit
+     */
+    public int getId(int rank) {
+        return ids[rank];
+    }
+
+    /**
+     * @param rank the position of the hit, 0 for the most similar one
+     * @return the similarity of the hit to the query
+     */
+    public double getScore(int rank) {
+        return scores[rank];
+    }
+
+    /**
+     * @return a copy of the ids of all hits
+     */
+    public int[] getIds() {
+        return ids.clone();
+    }
+
+    /**
+     * @return a copy of the similarities of all hits
+     */
+    public double[] getScores() {
+        return scores.clone();
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) return true;
+        if (o == null || getClass() != o.getClass()) return false;
+
+        SearchResult other = (SearchResult) o;
+        return Arrays.equals(ids, other.ids) && Arrays.equals(scores, other.scores);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * Arrays.hashCode(ids) + Arrays.hashCode(scores);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder s = new StringBuilder("SearchResult[");
+        for (int rank = 0; rank < ids.length; rank++) {
+            if (rank > 0) {
+                s.append(", ");
+            }
+            s.append(ids[rank]).append('=').append(scores[rank]);
+        }
+        return s.append(']').toString();
+    }
+}
@@ -17,6 +17,7 @@
 package org.pistoiaalliance.helm.HELMSimilarityLibrary;
 
 import java.util.BitSet;
+import java.util.List;
 
 import org.helm.notation2.parser.notation.HELM2Notation;
 
@@ -28,6 +29,27 @@ import org.helm.notation2.parser.notation.HELM2Notation;
  */
 public class Similarity {
 
+	private static volatile FingerprintCache fingerprintCache;
+
+	/**
+	 * Sets the cache of the fingerprints of the notations that are compared by
+	 * {@link #calculateSimilarity(HELM2Notation, HELM2Notation)} and
+	 * {@link #calculateSimilarityNatAnalogs(HELM2Notation, HELM2Notation)}. The fingerprints
+	 * have the configuration of the cache. There is no cache by default.
+	 *
+	 * @param cache the fingerprint cache, null to calculate the fingerprints every time
+	 */
+	public static void setFingerprintCache(FingerprintCache cache) {
+		fingerprintCache = cache;
+	}
+
+	/**
+	 * @return the fingerprint cache, null if there is none
+	 */
+	public static FingerprintCache getFingerprintCache() {
+		return fingerprintCache;
+	}
+
 	/**
 	 * Method calculates the similarity (tanimoto coefficient) of two HELM notations
 	 *
@@ -37,6 +59,10 @@ public class Similarity {
 	 * @throws Exception if anything goes wrong
 	 */
 	public static double calculateSimilarity(HELM2Notation notation1, HELM2Notation notation2) throws Exception {
+		FingerprintCache cache = fingerprintCache;
+		if(cache != null) {
+			return calculateSimilarity(cache.get(notation1).getFingerprint(), cache.get(notation2).getFingerprint());
+		}
 		BitSet fingerprint1 = Fingerprinter.calculateFingerprint(notation1);
 		BitSet fingerprint2 = Fingerprinter.calculateFingerprint(notation2);
 		return calculateSimilarity(fingerprint1, fingerprint2);
@@ -53,6 +79,11 @@ public class Similarity {
 	 */
 	public static double calculateSimilarityNatAnalogs(HELM2Notation notation1, HELM2Notation notation2)
 			throws Exception {
+		FingerprintCache cache = fingerprintCache;
+		if(cache != null) {
+			return calculateSimilarity(cache.get(notation1).getNaturalFingerprint(),
+					cache.get(notation2).getNaturalFingerprint());
+		}
 		BitSet fingerprint1 = Fingerprinter.calculateFingerprintNaturalAnalogs(notation1);
 		BitSet fingerprint2 = Fingerprinter.calculateFingerprintNaturalAnalogs(notation2);
 		return calculateSimilarity(fingerprint1, fingerprint2);
@@ -66,13 +97,59 @@ public class Similarity {
 	 * @return double tanimoto coefficient
 	 */
 	public static double calculateSimilarity(BitSet helmBitFingerprintI, BitSet helmBitFingerprintJ) {
-		BitSet resultHELMFingerprint;
-		resultHELMFingerprint = (BitSet) helmBitFingerprintI.clone();
+		// Count the common bits without creating an intersection bit set.
+		int common = 0;
+		for (int bit = helmBitFingerprintI.nextSetBit(0); bit >= 0; bit = helmBitFingerprintI.nextSetBit(bit + 1)) {
+			if (helmBitFingerprintJ.get(bit)) {
+				common++;
+			}
+		}
+		double denominator = helmBitFingerprintI.cardinality() + helmBitFingerprintJ.cardinality() - common;
+
+		return common / denominator;
+	}
+
+	/**
+	 * Method calculates the similarity (tanimoto coefficient) of two HELM notations with the
+	 * cached bit counts of their fingerprints.
+	 *
+	 * @param fingerprintI the first fingerprint
+	 * @param fingerprintJ the second fingerprint of the same size
+	 * @return double tanimoto coefficient
+	 */
+	public static double calculateSimilarity(HelmFingerprint fingerprintI, HelmFingerprint fingerprintJ) {
+		int common = fingerprintI.getCommonCardinality(fingerprintJ);
+		double denominator = fingerprintI.getCardinality() + fingerprintJ.getCardinality() - common;
 
-		resultHELMFingerprint.and(helmBitFingerprintJ);
-		double denominator = helmBitFingerprintI.cardinality() + helmBitFingerprintJ.cardinality() -
-				resultHELMFingerprint.cardinality();
+		return common / denominator;
+	}
+
+	/**
+	 * Method calculates the similarity (tanimoto coefficient) of a query fingerprint to every
+	 * fingerprint of a list and writes them to the given array.
+	 *
+	 * @param queryFingerprint the query fingerprint
+	 * @param fingerprints the fingerprints of the same size as the query
+	 * @param similarities array of at least the size of the list, the tanimoto coefficient of
+	 *                     the i-th fingerprint is written at index i
+	 */
+	public static void calculateSimilarities(HelmFingerprint queryFingerprint, List<HelmFingerprint> fingerprints,
+											 double[] similarities) {
+		if (similarities.length < fingerprints.size()) {
+			throw new IllegalArgumentException("Result array is smaller than the number of fingerprints.");
+		}
+		long[] queryWords = queryFingerprint.words;
+		int queryCardinality = queryFingerprint.getCardinality();
 
-		return resultHELMFingerprint.cardinality() / denominator;
+		for (int idx = 0; idx < fingerprints.size(); idx++) {
+			HelmFingerprint fingerprint = fingerprints.get(idx);
+			queryFingerprint.checkSameSize(fingerprint);
+			long[] words = fingerprint.words;
+			int common = 0;
+			for (int i = 0; i < queryWords.length; i++) {
+				common += Long.bitCount(queryWords[i] & words[i]);
+			}
+			similarities[idx] = common / (double) (queryCardinality + fingerprint.getCardinality() - common);
+		}
 	}
 }
\ No newline at end of file
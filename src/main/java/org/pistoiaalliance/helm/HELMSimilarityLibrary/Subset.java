@@ -17,6 +17,7 @@
 package org.pistoiaalliance.helm.HELMSimilarityLibrary;
 
 import java.util.BitSet;
+import java.util.List;
 
 import org.helm.notation2.parser.notation.HELM2Notation;
 
@@ -53,10 +54,63 @@ public class Subset {
      * @return boolean true if parent
      */
     public static Boolean checkHelmRelationship(BitSet parentFprint, BitSet childFprint){
-        BitSet tempParentFprint = (BitSet) parentFprint.clone();
+        // Stop at the first bit of the parent that is missing in the child.
+        for (int bit = parentFprint.nextSetBit(0); bit >= 0; bit = parentFprint.nextSetBit(bit + 1)) {
+            if (!childFprint.get(bit)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Method checks if parentFprint is a subset of childFprint and returns true
+     * in that case.
+     *
+     * @param parentFprint the parent fingerprint to be checked
+     * @param childFprint the child fingerprint of the same size to be checked
+     * @return boolean true if parent
+     */
+    public static boolean checkHelmRelationship(HelmFingerprint parentFprint, HelmFingerprint childFprint) {
+        parentFprint.checkSameSize(childFprint);
+        return isSubset(parentFprint.words, parentFprint.getCardinality(), childFprint);
+    }
+
+    /**
+     * Method checks for every fingerprint of a list if parentFprint is a subset of it and writes
+     * the results to the given array.
+     *
+     * @param parentFprint the parent fingerprint to be checked
+     * @param childFprints the child fingerprints of the same size to be checked
+     * @param subsets array of at least the size of the list, true is written at index i if
+     *                parentFprint is a subset of the i-th child fingerprint
+     */
+    public static void checkHelmRelationships(HelmFingerprint parentFprint, List<HelmFingerprint> childFprints,
+                                              boolean[] subsets) {
+        if (subsets.length < childFprints.size()) {
+            throw new IllegalArgumentException("Result array is smaller than the number of fingerprints.");
+        }
+        long[] parentWords = parentFprint.words;
+        int parentCardinality = parentFprint.getCardinality();
 
-        tempParentFprint.and(childFprint);
+        for (int idx = 0; idx < childFprints.size(); idx++) {
+            HelmFingerprint childFprint = childFprints.get(idx);
+            parentFprint.checkSameSize(childFprint);
+            subsets[idx] = isSubset(parentWords, parentCardinality, childFprint);
+        }
+    }
 
-        return tempParentFprint.equals(parentFprint);
+    private static boolean isSubset(long[] parentWords, int parentCardinality, HelmFingerprint childFprint) {
+        // A child with less bits than the parent cannot contain it.
+        if (parentCardinality > childFprint.getCardinality()) {
+            return false;
+        }
+        long[] childWords = childFprint.words;
+        for (int i = 0; i < parentWords.length; i++) {
+            if ((parentWords[i] & ~childWords[i]) != 0) {
+                return false;
+            }
+        }
+        return true;
     }
 }
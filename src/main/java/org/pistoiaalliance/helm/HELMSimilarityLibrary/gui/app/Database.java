@@ -38,6 +38,8 @@ import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Stream;
 
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.FingerprintIndex;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.HelmFingerprint;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.Subset;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.gui.layout.AlertBox;
 
@@ -247,6 +249,62 @@ public class Database {
 		con.close();
 	}
 
+	/**
+	 * Fill table with HELM fingerprint at the corresponding ID. The fingerprints are stored
+	 * in the same format as bit sets.
+	 *
+	 * @param url the url of the database
+	 * @param fingerprints fingerprint of a HELM notation
+	 * @param naturalFingerprints natural fingerprint of HELM notation
+	 * @param idList the list of iDs of HELM
+	 * @param tablename the name of the table
+	 * @throws SQLException if anything goes wrong
+	 */
+	public void insertHelmFingerprints(String url, List<HelmFingerprint> fingerprints,
+									   List<HelmFingerprint> naturalFingerprints, List<Integer> idList,
+									   String tablename) throws SQLException {
+		Connection con = DriverManager.getConnection(url);
+		con.setAutoCommit(false);
+		PreparedStatement pStmt = con.prepareStatement(
+				"UPDATE " + tablename + " set OriginalFingerprint = ?, NaturalFingerprint = ? where ID = ?");
+		for (int i = 0; i < fingerprints.size(); i++) {
+			pStmt.setString(1, fingerprints.get(i).toString());
+			pStmt.setString(2, naturalFingerprints.get(i).toString());
+			pStmt.setInt(3, idList.get(i));
+			pStmt.executeUpdate();
+		}
+		con.commit();
+		pStmt.close();
+		con.close();
+	}
+
+	/**
+	 * Fill table with the HELM fingerprints of two indexes at the IDs of their entries. The
+	 * fingerprints are stored in the same format as bit sets.
+	 *
+	 * @param url the url of the database
+	 * @param fingerprints fingerprints of the HELM notations
+	 * @param naturalFingerprints natural fingerprints of the HELM notations, in the same order
+	 * @param tablename the name of the table
+	 * @throws SQLException if anything goes wrong
+	 */
+	public void insertIndexedFingerprints(String url, FingerprintIndex fingerprints,
+										  FingerprintIndex naturalFingerprints, String tablename) throws SQLException {
+		Connection con = DriverManager.getConnection(url);
+		con.setAutoCommit(false);
+		PreparedStatement pStmt = con.prepareStatement(
+				"UPDATE " + tablename + " set OriginalFingerprint = ?, NaturalFingerprint = ? where ID = ?");
+		for (int i = 0; i < fingerprints.size(); i++) {
+			pStmt.setString(1, fingerprints.getFingerprint(i).toString());
+			pStmt.setString(2, naturalFingerprints.getFingerprint(i).toString());
+			pStmt.setInt(3, fingerprints.getId(i));
+			pStmt.executeUpdate();
+		}
+		con.commit();
+		pStmt.close();
+		con.close();
+	}
+
 	/**
 	 * Method fills table with tanimoto value at the corresponding ID.
 	 *
@@ -299,42 +357,6 @@ public class Database {
 		return idWithHELM;
 	}
 
-	/**
-	 * Method selects ten notations with the highest similarity to the query.
-	 *
-	 * @param url the url of the database
-	 * @param tablename the name of the table
-	 * @param columnname the name of the column
-	 * @return List similar notations
-	 * @throws SQLException if the sql statement goes wrong
-	 */
-	public List<Map<String, Object>> getMostSimilarNotations(String url, String tablename, String columnname)
-			throws SQLException {
-		Connection con = DriverManager.getConnection(url);
-		List<Map<String, Object>> resultList = new ArrayList<>();
-		Map<String, Object> row;
-
-		Statement stmt = con.createStatement();
-		ResultSet resultNotations = stmt
-				.executeQuery("SELECT * FROM " + tablename + " ORDER BY " + columnname + " DESC;");
-
-		ResultSetMetaData metaData = resultNotations.getMetaData();
-		Integer columnCount = metaData.getColumnCount();
-		int notationCounter = 0;
-
-		while (resultNotations.next() && notationCounter < 10) {
-			row = new HashMap<>();
-			for (int i = 1; i <= columnCount; i++) {
-				row.put(metaData.getColumnName(i), resultNotations.getObject(i));
-			}
-			resultList.add(row);
-			notationCounter++;
-		}
-		stmt.close();
-		con.close();
-		return resultList;
-	}
-
 	/**
 	 * Selects the helm notations with a tanimoto bigger than or equal to the
 	 * desired similarity.
@@ -431,6 +453,34 @@ public class Database {
 		con.close();
 	}
 
+	/**
+	 * Method checks for a list of fingerprints if the query notation is a subset of
+	 * it and stores true or false in the database for the corresponding
+	 * fingerprint.
+	 *
+	 * @param url the url of the database
+	 * @param queryFingerprint the query fingerprint
+	 * @param idList the list of ids
+	 * @param fingerprints the list of fingerprints
+	 * @throws SQLException if the sql statement goes wrong
+	 */
+	public void setHelmSubset(String url, HelmFingerprint queryFingerprint, List<Integer> idList,
+							  List<HelmFingerprint> fingerprints) throws SQLException {
+		Connection con = DriverManager.getConnection(url);
+		Statement stmt = con.createStatement();
+		con.setAutoCommit(false);
+
+		boolean[] subsets = new boolean[fingerprints.size()];
+		Subset.checkHelmRelationships(queryFingerprint, fingerprints, subsets);
+		for (int idx = 0; idx < idList.size(); idx++) {
+			stmt.executeUpdate(
+					"UPDATE HELMnotations SET hasSubset = '" + subsets[idx] + "' WHERE ID = " + idList.get(idx));
+		}
+		con.commit();
+		stmt.close();
+		con.close();
+	}
+
 	/**
 	 * Returns the maximum similarity value that is found of a notation to the
 	 * query.
@@ -129,7 +129,7 @@ public class Main extends Application implements EventHandler<ActionEvent> {
 	private void setCenterLayout(Options options) {
 //		centerLayout.setGridLinesVisible(true);
 		centerLayout.getChildren().addAll(options.title, options.analogsCheckBox,
-				options.tenSimilarCheckBox,
+				options.mostSimilarCheckBox, options.mostSimilarTextField,
 				options.radioSimSearch, options.radioSubset, options.scrollCheckBox,
 				options.tanimotoUnit, options.scrollBar, options.tanimotoTextField);
 		centerLayout.setPadding(new Insets(10, 10, 10, 10));
@@ -146,8 +146,10 @@ public class Main extends Application implements EventHandler<ActionEvent> {
 		GridPane.setConstraints(options.tanimotoTextField, 2, 2);
 		GridPane.setConstraints(options.tanimotoUnit, 3, 2);
 		GridPane.setMargin(options.tanimotoUnit, new Insets(0, 20, 0, 0));
-		GridPane.setConstraints(options.tenSimilarCheckBox, 0, 3);
-		GridPane.setMargin(options.tenSimilarCheckBox, new Insets(0, 0, 0, 30));
+		GridPane.setConstraints(options.mostSimilarCheckBox, 0, 3);
+		GridPane.setMargin(options.mostSimilarCheckBox, new Insets(0, 0, 0, 30));
+		GridPane.setConstraints(options.mostSimilarTextField, 1, 3);
+		GridPane.setMargin(options.mostSimilarTextField, new Insets(0, 0, 0, 30));
 		GridPane.setConstraints(options.analogsCheckBox, 0, 4);
 		GridPane.setMargin(options.analogsCheckBox, new Insets(0, 0, 0, 30));
 		GridPane.setConstraints(options.radioSubset, 0, 5);
@@ -61,7 +61,10 @@ public class Options extends Main {
 	private double desiredSimilarity;
 	protected MyText tanimotoUnit;
 	protected ScrollBar scrollBar;
-	protected static MyRadioButton tenSimilarCheckBox;
+	protected static MyRadioButton mostSimilarCheckBox;
+	protected MyTextField mostSimilarTextField;
+	private int defaultMostSimilarCount = 10;
+	private static int mostSimilarCount;
 	protected static MyCheckBox analogsCheckBox;
 
 	/**
@@ -105,8 +108,12 @@ public class Options extends Main {
 		setScrollBarProperties();
 		setBindingProperties();
 
-		tenSimilarCheckBox = new MyRadioButton("Show 10 most similar notations", 13, simSearchGroup);
-		tenSimilarCheckBoxAction();
+		mostSimilarCheckBox = new MyRadioButton("Show the most similar notations, number:", 13, simSearchGroup);
+		mostSimilarCheckBoxAction();
+
+		mostSimilarTextField = new MyTextField(Integer.toString(defaultMostSimilarCount), 50, 11);
+		mostSimilarTextField.setText(Integer.toString(defaultMostSimilarCount));
+		mostSimilarTextField.setDisable(true);
 
 		analogsCheckBox = new MyCheckBox("Consider natural analogs");
 		analogsCheckBox.setSelected(false);
@@ -122,7 +129,8 @@ public class Options extends Main {
 			scrollBar.setDisable(false);
 			tanimotoUnit.setStyle("-fx-opacity: 1");
 			tanimotoTextField.setDisable(false);
-			tenSimilarCheckBox.setDisable(false);
+			mostSimilarCheckBox.setDisable(false);
+			mostSimilarTextField.setDisable(!mostSimilarCheckBox.isSelected());
 			analogsCheckBox.setDisable(false);
 		});
 	}
@@ -137,7 +145,8 @@ public class Options extends Main {
 				scrollBar.setDisable(true);
 				tanimotoUnit.setStyle("-fx-opacity: 0.4");
 				tanimotoTextField.setDisable(true);
-				tenSimilarCheckBox.setDisable(true);
+				mostSimilarCheckBox.setDisable(true);
+				mostSimilarTextField.setDisable(true);
 				analogsCheckBox.setDisable(true);
 			}
 		});
@@ -149,7 +158,8 @@ public class Options extends Main {
 	private void scrollCheckBoxAction() {
 		scrollCheckBox.setSelected(true);
 		scrollCheckBox.setOnAction(event -> {
-			tenSimilarCheckBox.setSelected(false);
+			mostSimilarCheckBox.setSelected(false);
+			mostSimilarTextField.setDisable(true);
 			scrollBar.setDisable(false);
 			tanimotoTextField.setDisable(false);
 			tanimotoUnit.setStyle("-fx-opacity: 1");
@@ -213,13 +223,14 @@ public class Options extends Main {
 	}
 
 	/**
-	 * Method sets check box for the ten most similar notations
+	 * Method sets check box for the most similar notations
 	 * on action.
 	 */
-	private void tenSimilarCheckBoxAction() {
-		tenSimilarCheckBox.setSelected(false);
-		tenSimilarCheckBox.setOnAction(event -> {
+	private void mostSimilarCheckBoxAction() {
+		mostSimilarCheckBox.setSelected(false);
+		mostSimilarCheckBox.setOnAction(event -> {
 			scrollCheckBox.setSelected(false);
+			mostSimilarTextField.setDisable(false);
 			scrollBar.setDisable(true);
 			tanimotoTextField.setDisable(true);
 			tanimotoUnit.setStyle("-fx-opacity: 0.4");
@@ -239,14 +250,35 @@ public class Options extends Main {
 				queryNotation = HELM2Object.makeHELM2NotationObject(queryHelmTextField.getCharacters().toString());
 				desiredSimilarity = Double.parseDouble(tanimotoTextField.getText());
 				desiredSimilarity = desiredSimilarity / 100;
+				if (mostSimilarCheckBox.isSelected()) {
+					int count = parseMostSimilarCount();
+					if (count < 1) {
+						AlertBox.ErrorBox("Invalid number", "Please enter a positive number of most similar notations.");
+						return;
+					}
+					mostSimilarCount = count;
+				}
 				@SuppressWarnings("unused")
 				SimilaritySearch simSearch = new SimilaritySearch(queryNotation, desiredSimilarity);
 			} catch (ExceptionState e) {
 				AlertBox.ErrorBox("Notation Error", "Invalid HELM notation.");
+			} catch (NumberFormatException e) {
+				AlertBox.ErrorBox("Invalid similarity", "Please enter the similarity in percent.");
 			}
 		}
 	}
 
+	/**
+	 * @return the number of most similar notations entered by the user, -1 if it is not a number
+	 */
+	private int parseMostSimilarCount() {
+		try {
+			return Integer.parseInt(mostSimilarTextField.getText().trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
 	public HELM2Notation getQueryNotation() {
 		return this.queryNotation;
 	}
@@ -254,4 +286,11 @@ public class Options extends Main {
 	public double getSimilarity() {
 		return this.desiredSimilarity;
 	}
+
+	/**
+	 * @return the number of most similar notations to be shown
+	 */
+	public static int getMostSimilarCount() {
+		return mostSimilarCount;
+	}
 }
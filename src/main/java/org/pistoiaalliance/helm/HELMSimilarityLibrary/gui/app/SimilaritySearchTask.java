@@ -17,6 +17,8 @@
 package org.pistoiaalliance.helm.HELMSimilarityLibrary.gui.app;
 
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
@@ -27,24 +29,30 @@ import java.text.DecimalFormat;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
 
 import org.helm.notation2.parser.exceptionparser.ExceptionState;
 import org.helm.notation2.parser.exceptionparser.NotationException;
 import org.helm.notation2.parser.notation.HELM2Notation;
 
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.FingerprintCache;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.FingerprintConfig;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.FingerprintIndex;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.FingerprintOptions;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.FingerprintPair;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.FingerprintResult;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.Fingerprinter;
-import org.pistoiaalliance.helm.HELMSimilarityLibrary.HELM2Object;
-import org.pistoiaalliance.helm.HELMSimilarityLibrary.PathGenerator;
-import org.pistoiaalliance.helm.HELMSimilarityLibrary.Similarity;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.HelmFingerprint;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.PersistentFingerprintCache;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.SearchResult;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.exception.NaturalAnalogException;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.gui.layout.AlertBox;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.gui.layout.MyProgressBar;
-import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Graph;
-import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraphUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import javafx.application.Platform;
 import javafx.concurrent.Task;
@@ -73,23 +81,22 @@ import javafx.concurrent.Task;
 
 public class SimilaritySearchTask extends Task<Integer> {
 	String url;
-	BitSet queryFingerprint = new BitSet();
-	BitSet queryNaturalFingerprint = new BitSet();
+	HelmFingerprint queryFingerprint = HelmFingerprint.fromBitSet(new BitSet());
+	HelmFingerprint queryNaturalFingerprint = HelmFingerprint.fromBitSet(new BitSet());
 	private static Map<Integer, String> idWithHELM;
 	protected static List<Integer> idList;
-	protected static List<HELM2Notation> helmList;
-	private static List<Graph> molecules;
-	private static PathGenerator dfs = new PathGenerator();
-	private static Set<String> allPaths = new HashSet<String>();
-	private static Set<String> allPathsNaturalAnalogs = new HashSet<String>();
-	private static List<BitSet> fingerprints = new ArrayList<BitSet>();
-	private static List<BitSet> fingerprintsNaturalAnalogs = new ArrayList<BitSet>();
-	protected static List<Double> tanimotoList;
+	protected static List<String> helmList;
+	private static FingerprintIndex fingerprints = new FingerprintIndex(FingerprintConfig.DEFAULT.getSize());
+	private static FingerprintIndex fingerprintsNaturalAnalogs = new FingerprintIndex(FingerprintConfig.DEFAULT.getSize());
 	protected static List<Map<String, Object>> resultNotations;
 	protected static MyProgressBar progressbar = new MyProgressBar();
 	private HELM2Notation queryNotation;
 	private double desiredTanimoto;
 	public static final double MAX_PROGRESS = 100;
+	// Fingerprints of the recent queries, a query that is run again is not fingerprinted again.
+	private static final FingerprintCache QUERY_CACHE = new FingerprintCache(64);
+	private static final String FINGERPRINT_CACHE_EXTENSION = ".fpcache";
+	private static final Logger LOG = LoggerFactory.getLogger(SimilaritySearchTask.class);
 	private double workDone = 0;
 	private double steps;
 
@@ -128,50 +135,29 @@ public class SimilaritySearchTask extends Task<Integer> {
 				dbInstance.loadDriver("org.sqlite.JDBC");
 
 				// If fingerprints have not been calculated before, start with the
-				// initial generation of HELM2 notation objects, molecule graphs and
-				// fingerprints (with and without natural analogs).
+				// initial generation of HELM2 notation objects and fingerprints
+				// (with and without natural analogs).
 				if (!columnExists(url, "HELMnotations", "OriginalFingerprint")) {
-					notationsToHELM2Object(dbInstance);
-					buildMoleculeGraphs();
+					readNotations(dbInstance);
 					generateFingerprints();
 					dbInstance.addColumn(url, "HELMnotations", "OriginalFingerprint");
 					dbInstance.addColumn(url, "HELMnotations", "NaturalFingerprint");
 					insertFingerprintsToDatabase(dbInstance, url);
-				} // Else use the fingerprints from before and only calculate
-				// tanimoto values again.
+				} // Else use the fingerprints from before and only search them again.
 				else {
-					tanimotoList.clear();
-					steps = MAX_PROGRESS / (idList.size() * 3);
+					steps = MAX_PROGRESS / (fingerprints.size() * 3);
 					updateProgress(workDone, MAX_PROGRESS);
 				}
+				// The fingerprints are searched in memory, the similarities are not stored in the database.
 				// For substructure filter, only use the fingerprints of original paths.
-				if (Options.radioSimSearch.isSelected()) {
+				if (Options.radioSubset.isSelected()) {
+					doSubstructureFilter(queryFingerprint);
+				} else if (Options.analogsCheckBox.isSelected()) {
 					// If naturalAnalogFlag is enabled, the natural analogs of non-natural monomers
 					// will be taken into account.
-					if (Options.analogsCheckBox.isSelected()) {
-						calculateTanimotoToQuery(fingerprintsNaturalAnalogs, queryNaturalFingerprint);
-					} else {
-						calculateTanimotoToQuery(fingerprints, queryFingerprint);
-					}
+					searchSimilarNotations(fingerprintsNaturalAnalogs, queryNaturalFingerprint, desiredTanimoto);
 				} else {
-					calculateTanimotoToQuery(fingerprints, queryFingerprint);
-				}
-
-				// If the similarity has not been calculated before, add a new column
-				// to database.
-				if (!columnExists(url, "HELMnotations", "Similarity")) {
-					dbInstance.addColumn(url, "HELMnotations", "Similarity");
-				}
-				insertTanimotoToDatabase(dbInstance, url);
-
-				// If substructure filter is selected, execute subset algorithm and get
-				// the notations from the database that the query is a subset of.
-				if (Options.radioSubset.isSelected()) {
-					doSubstructureFilter(dbInstance, url, queryFingerprint);
-					getSubsetNotationsFromDatabase(dbInstance, url, "HELMnotations", "hasSubset");
-				} else {
-					getSimilarNotationsFromDatabase(dbInstance, url, "HELMnotations",
-							"Similarity", desiredTanimoto);
+					searchSimilarNotations(fingerprints, queryFingerprint, desiredTanimoto);
 				}
 
 				// Fill the table view of UI with the resultNotations.
@@ -196,42 +182,27 @@ public class SimilaritySearchTask extends Task<Integer> {
 
 	/**
 	 * Method builds a moleculeGraph of the queryNotation, finds every path in it
-	 * and generates its fingerprint.
+	 * and generates its fingerprints.
 	 *
 	 * @param queryNotation the query notation
 	 */
 	private void processQueryNotation(HELM2Notation queryNotation) {
-		List<Graph> queryMolecule = new ArrayList<>();
-		PathGenerator dfs = new PathGenerator();
-		Set<String> paths;
-		Set<String> naturalPaths;
-
 		try {
-			queryMolecule.add(
-					MoleculeGraphUtils.buildMoleculeGraph(queryNotation.getListOfPolymers(),
-							queryNotation.getListOfConnections()));
-			paths = dfs.getPaths();
-			naturalPaths = dfs.getNaturalPaths();
-			dfs.findPaths(queryMolecule.get(0));
-			queryFingerprint = Fingerprinter.getHashedFingerprint(paths);
-			queryNaturalFingerprint = Fingerprinter.getHashedFingerprint(naturalPaths);
-			queryNaturalFingerprint.or(queryFingerprint);
-
-		} catch (NotationException e) {
-			updateUIerrorReport("NotationException", "");
-		}  catch (NaturalAnalogException e) {
-			updateUIerrorReport("NaturalAnalogException", "Couldn't find natural analog to monomer.");
-		} catch (NoSuchAlgorithmException e) {
-			updateUIerrorReport("NoSuchAlgorithmException", "");
+			FingerprintPair fingerprintPair = QUERY_CACHE.get(queryNotation);
+			queryFingerprint = fingerprintPair.getFingerprint();
+			queryNaturalFingerprint = fingerprintPair.getNaturalFingerprint();
+		} catch (Exception e) {
+			reportFingerprintError(e);
 		}
 	}
 
 	/**
-	 * Method reads HELM notations with ID from database and generates HELM2Objects.
+	 * Method reads HELM notations with ID from database. The notations are parsed
+	 * while their fingerprints are generated.
 	 *
 	 * @param dbInstance the database instance
 	 */
-	private void notationsToHELM2Object(Database dbInstance) {
+	private void readNotations(Database dbInstance) {
 		try {
 			idWithHELM = new HashMap<>();
 			idList = new ArrayList<>();
@@ -240,19 +211,10 @@ public class SimilaritySearchTask extends Task<Integer> {
 			updateUItextDisplay("Reading database...");
 			idWithHELM = dbInstance.readIDandHELMRecords(url, "HELMnotations");
 			steps = MAX_PROGRESS / (idWithHELM.size() * 7);
-			updateUItextDisplay("Creating HELM2 objects...");
 
 			idWithHELM.forEach((id, helm) -> {
 				idList.add(id);
-				try {
-					helmList.add(HELM2Object.makeHELM2NotationObject(helm));
-				} catch (ExceptionState e) {
-
-					System.out.println(e.getMessage() + " at " + id + ": " + helm);
-					updateUIerrorReport("hier ExceptionState", e.getMessage() + " at " + id + ": "
-							+ helm);
-					updateUItextDisplay("");
-				}
+				helmList.add(helm);
 				workDone += steps;
 				updateProgress(workDone, MAX_PROGRESS);
 			});
@@ -286,62 +248,77 @@ public class SimilaritySearchTask extends Task<Integer> {
 	}
 
 	/**
-	 * Method builds moleculeGraphs from a list of helm notations.
+	 * Method generates the fingerprints of every helm notation in parallel.
+	 * A notation whose fingerprint cannot be calculated gets an empty fingerprint,
+	 * so that the fingerprints stay in the order of the notations.
 	 */
-	private void buildMoleculeGraphs() {
-		updateUItextDisplay("Building molecule graphs...");
-		molecules = new ArrayList<>();
+	private void generateFingerprints() {
+		updateUItextDisplay("Generating fingerprints...");
+		fingerprints = new FingerprintIndex(FingerprintConfig.DEFAULT.getSize(), helmList.size());
+		fingerprintsNaturalAnalogs = new FingerprintIndex(FingerprintConfig.DEFAULT.getSize(), helmList.size());
+		HelmFingerprint emptyFingerprint = HelmFingerprint.fromBitSet(new BitSet());
 
-		helmList.forEach(helm -> {
+		// The fingerprints are stored next to the database, so notations that were seen before are not
+		// calculated again after a restart or for another database with the same notations.
+		PersistentFingerprintCache cache = null;
+		try {
+			cache = PersistentFingerprintCache.open(Paths.get(Input.getDatabasePath() + FINGERPRINT_CACHE_EXTENSION));
+		} catch (IOException e) {
+			LOG.warn("Fingerprint cache not available: {}", e.getMessage());
+		}
+		Iterator<FingerprintResult> results = Fingerprinter.calculateFingerprintsFromHelm(helmList.iterator(),
+				FingerprintOptions.DEFAULT.withCache(cache));
+		while (results.hasNext()) {
+			FingerprintResult result = results.next();
+			int id = idList.get(result.getIndex());
+			if (result.isSuccessful()) {
+				fingerprints.add(id, result.getFingerprint());
+				fingerprintsNaturalAnalogs.add(id, result.getNaturalFingerprint());
+			} else {
+				fingerprints.add(id, emptyFingerprint);
+				fingerprintsNaturalAnalogs.add(id, emptyFingerprint);
+				if (result.getError() instanceof ExceptionState) {
+					// The notation could not be parsed, report it with its ID.
+					String message = result.getError().getMessage() + " at " + idList.get(result.getIndex()) + ": "
+							+ helmList.get(result.getIndex());
+					LOG.warn(message);
+					updateUIerrorReport("ExceptionState", message);
+					updateUItextDisplay("");
+				} else {
+					reportFingerprintError(result.getError());
+				}
+			}
+			// Graph building and path finding are one step now.
+			workDone += 2 * steps;
+			updateProgress(workDone, MAX_PROGRESS);
+		}
+		if (cache != null) {
 			try {
-				molecules.add(MoleculeGraphUtils.buildMoleculeGraph(helm.getListOfPolymers(),
-						helm.getListOfConnections()));
-				workDone += steps;
-				updateProgress(workDone, MAX_PROGRESS);
-			} catch (NotationException e) {
-				updateUIerrorReport("NotationException", e.getMessage());
-				updateUItextDisplay("");
+				cache.close();
+			} catch (IOException e) {
+				LOG.warn("Fingerprint cache could not be closed: {}", e.getMessage());
 			}
-		});
-		updateUItextDisplay("Molecule graphs built successfully.");
+		}
+		updateUItextDisplay("Fingerprints generated successfully.");
 	}
 
 	/**
-	 * Method finds every path in the moleculeGraphs and generates fingerprints for
-	 * every moleculeGraph.
+	 * Method reports the error of a failed fingerprint calculation.
 	 *
+	 * @param e the exception of the calculation
 	 */
-	private void generateFingerprints() {
-		updateUItextDisplay("Generating fingerprints...");
-		dfs = new PathGenerator();
-		allPaths = new HashSet<>();
-		allPathsNaturalAnalogs = new HashSet<>();
-		fingerprints = new ArrayList<>();
-		fingerprintsNaturalAnalogs = new ArrayList<>();
-
-		for (int j = 0; j < molecules.size(); j++) {
-			try {
-				dfs.findPaths(molecules.get(j));
-				allPaths = dfs.getPaths();
-				allPathsNaturalAnalogs = dfs.getNaturalPaths();
-				fingerprints.add(Fingerprinter.getHashedFingerprint(allPaths));
-				fingerprintsNaturalAnalogs.add(Fingerprinter.getHashedFingerprint(allPathsNaturalAnalogs));
-				dfs.clearPaths();
-				allPaths.clear();
-				allPathsNaturalAnalogs.clear();
-
-				fingerprintsNaturalAnalogs.get(j).or(fingerprints.get(j));
-
-				workDone += steps;
-				updateProgress(workDone, MAX_PROGRESS);
-			} catch (NaturalAnalogException e) {
-				updateUIerrorReport("NaturalAnalogException",
-						"Couldn't find natural analog to monomer.");
-			} catch (NoSuchAlgorithmException e) {
-				updateUIerrorReport("NoSuchAlgorithmException", "");
-			}
+	private void reportFingerprintError(Exception e) {
+		if (e instanceof NotationException) {
+			updateUIerrorReport("NotationException", e.getMessage());
+			updateUItextDisplay("");
+		} else if (e instanceof NaturalAnalogException) {
+			updateUIerrorReport("NaturalAnalogException",
+					"Couldn't find natural analog to monomer.");
+		} else if (e instanceof NoSuchAlgorithmException) {
+			updateUIerrorReport("NoSuchAlgorithmException", "");
+		} else {
+			updateUIerrorReport(e.getClass().getSimpleName(), String.valueOf(e.getMessage()));
 		}
-		updateUItextDisplay("Fingerprints generated successfully.");
 	}
 
 	/**
@@ -353,8 +330,7 @@ public class SimilaritySearchTask extends Task<Integer> {
 	private void insertFingerprintsToDatabase(Database dbInstance, String url) {
 		updateUItextDisplay("Storing fingerprints in database...");
 		try {
-			dbInstance.insertFingerprints(url, fingerprints, fingerprintsNaturalAnalogs, idList,
-					"HELMnotations");
+			dbInstance.insertIndexedFingerprints(url, fingerprints, fingerprintsNaturalAnalogs, "HELMnotations");
 			workDone += steps * fingerprints.size();
 			updateProgress(workDone, MAX_PROGRESS);
 		} catch (SQLException e) {
@@ -363,135 +339,86 @@ public class SimilaritySearchTask extends Task<Integer> {
 	}
 
 	/**
-	 * Method calls the function for substructure filter for each notation and saves
-	 * the information with true or false in database column.
+	 * Method searches the notations that the query notation is a subset of.
 	 *
-	 * @param dbInstance the database instance
-	 * @param url the url of the database
 	 * @param queryFingerprint the query fingerprint
 	 */
-	private void doSubstructureFilter(Database dbInstance, String url, BitSet queryFingerprint) {
+	private void doSubstructureFilter(HelmFingerprint queryFingerprint) {
 		updateUItextDisplay("Checking for subset...");
-		try {
-			if (!columnExists(url, "HELMnotations", "hasSubset")) {
-				dbInstance.addColumn(url, "HELMnotations", "hasSubset");
-			}
-			dbInstance.setSubset(url, queryFingerprint, idList, fingerprints);
-			workDone += steps;
-			updateProgress(workDone, MAX_PROGRESS);
-		} catch (SQLException e) {
-			updateUIerrorReport("SQLError", "Column 'hasSubset' could not be created");
+		resultNotations = getResultNotations(fingerprints.searchSubsets(queryFingerprint));
+		updateProgress(MAX_PROGRESS, MAX_PROGRESS);
+		if (resultNotations.size() == 0) {
+			updateUItextDisplay("Query notation is not a substructure of your set of notations.");
+		} else if (resultNotations.size() == 1) {
+			updateUItextDisplay("Query notation is a substructure of 1 notation.");
+		} else {
+			updateUItextDisplay("Query notation is a substructure of " + resultNotations.size() + " notations.");
 		}
 	}
 
 	/**
-	 * Method calculates the tanimoto value between the query notation and every
-	 * other notation.
+	 * Method searches the helm notations that are at least of a minimum similarity
+	 * to the query notation, or the given number of most similar ones. The most similar
+	 * notations are searched in parallel on the common fork join pool.
 	 *
+	 * @param fingerprints the fingerprints to be searched
 	 * @param queryFingerprint the query fingerprint
+	 * @param desiredTanimoto the desired minimum tanimoto
 	 */
-	private void calculateTanimotoToQuery(List<BitSet> fingerprints, BitSet queryFingerprint) {
+	private void searchSimilarNotations(FingerprintIndex fingerprints, HelmFingerprint queryFingerprint,
+										double desiredTanimoto) {
 		updateUItextDisplay("Calculating similarity...");
-		tanimotoList = new ArrayList<>();
-		fingerprints.forEach(fprint -> {
-			tanimotoList.add(Similarity.calculateSimilarity(queryFingerprint, fprint));
-			workDone += steps;
-			updateProgress(workDone, MAX_PROGRESS);
-		});
-	}
-
-	/**
-	 * Method inserts tanimoto values to a SQLite database.
-	 *
-	 * @param dbInstance the database instance
-	 * @param url the url of the database
-	 */
-	private void insertTanimotoToDatabase(Database dbInstance, String url) {
-		updateUItextDisplay("Storing similarity values in database...");
-		try {
-			dbInstance.fillHELMTanimotoTable(url, "HELMnotations", idList, tanimotoList);
-			workDone += (steps * tanimotoList.size()) - 1;
-			updateProgress(workDone, MAX_PROGRESS);
-		} catch (SQLException e) {
-			updateUIerrorReport("SQLException", "Couldn't fill database with similarity values.");
-		}
-	}
-
-	/**
-	 * Method selects the notations from database that the query is a subset of.
-	 *
-	 * @param dbInstance the database instance
-	 * @param url the url of the database
-	 * @param tablename the name of the table
-	 * @param columnname the name of the column
-	 */
-	private void getSubsetNotationsFromDatabase(Database dbInstance, String url, String tablename, String columnname) {
-		updateUItextDisplay("Selecting notations with subset from database...");
-		resultNotations = new ArrayList<>();
-		try {
-			resultNotations = dbInstance.getNotationsWithSubset(url, tablename, columnname);
-			updateProgress(MAX_PROGRESS, MAX_PROGRESS);
-			if (resultNotations.size() == 0) {
-				updateUItextDisplay("Query notation is not a substructure of your set of notations.");
-			} else if (resultNotations.size() == 1) {
-				updateUItextDisplay("Query notation is a substructure of 1 notation.");
-			} else {
-				updateUItextDisplay("Query notation is a substructure of " + resultNotations.size() + " notations.");
+		SearchResult hits;
+		if (Options.mostSimilarCheckBox.isSelected()) {
+			try {
+				hits = fingerprints.searchTopK(queryFingerprint, Options.getMostSimilarCount(),
+						ForkJoinPool.commonPool());
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				resultNotations = new ArrayList<>();
+				return;
 			}
-		} catch (SQLException e) {
-			updateUIerrorReport("SQLError", "Couldn't select notations with subset.");
+		} else {
+			hits = fingerprints.searchThreshold(queryFingerprint, desiredTanimoto);
+		}
+		resultNotations = getResultNotations(hits);
+		updateProgress(MAX_PROGRESS, MAX_PROGRESS);
+
+		if (resultNotations.size() == 0) {
+			SearchResult mostSimilar = fingerprints.searchTopK(queryFingerprint, 1);
+			double nextBiggestTanimoto = mostSimilar.size() == 0 ? 0 : mostSimilar.getScore(0);
+			Platform.runLater(new Runnable() {
+				@Override
+				public void run() {
+					String tanimoto = new DecimalFormat("#0.0000").format(nextBiggestTanimoto * 100) + " %";
+					updateUItextDisplay("No similar notations found.");
+					AlertBox.InfoBox("No similar notations found. The next similar notation has a similarity of "
+							+ tanimoto + " to the query.");
+				}
+			});
+		} else if (resultNotations.size() == 1) {
+			updateUItextDisplay("1 similar notation found.");
+		} else {
+			updateUItextDisplay(resultNotations.size() + " similar notations found.");
 		}
 	}
 
 	/**
-	 * Method selects the helm notations that are at least of a minimum similarity
-	 * to the query notation.
+	 * Method turns the hits of a search into the rows of the result table.
 	 *
-	 * @param dbInstance the database instance
-	 * @param url the url of the database
-	 * @param tablename the name of the table
-	 * @param columnname the name of the column
-	 * @param desiredTanimoto the desired minimum tanimoto
+	 * @param hits the hits of a search
+	 * @return ID, HELM and similarity of every hit
 	 */
-	private void getSimilarNotationsFromDatabase(Database dbInstance, String url, String tablename, String columnname,
-												 double desiredTanimoto) {
-		resultNotations = new ArrayList<>();
-		try {
-			updateUItextDisplay("Selecting similar notations...");
-			if(Options.tenSimilarCheckBox.isSelected()) {
-				resultNotations = dbInstance.getMostSimilarNotations(url, tablename, columnname);
-			} else {
-				resultNotations = dbInstance.getNotationsWithSpecificTanimoto(url, tablename, columnname,
-						desiredTanimoto);
-			}
-			updateProgress(MAX_PROGRESS, MAX_PROGRESS);
-
-			if (resultNotations.size() == 0) {
-				Platform.runLater(new Runnable() {
-					@Override
-					public void run() {
-						try {
-							double nextBiggestTanimoto;
-							nextBiggestTanimoto = dbInstance.getBiggestTanimoto(url);
-							String tanimoto = new DecimalFormat("#0.0000").format(nextBiggestTanimoto * 100)
-									+ " %";
-							updateUItextDisplay("No similar notations found.");
-							AlertBox.InfoBox(
-									"No similar notations found. The next similar notation has a similarity of "
-											+ tanimoto + " to the query.");
-						} catch (SQLException e) {
-							updateUIerrorReport("SQL Error", "Error while accessing similarity column.");
-						}
-					}
-				});
-			} else if (resultNotations.size() == 1) {
-				updateUItextDisplay("1 similar notation found.");
-			} else {
-				updateUItextDisplay(resultNotations.size() + " similar notations found.");
-			}
-		} catch (SQLException e) {
-			updateUIerrorReport("SQLException", "Couldn't get similar notations from database.");
+	private static List<Map<String, Object>> getResultNotations(SearchResult hits) {
+		List<Map<String, Object>> rows = new ArrayList<>(hits.size());
+		for (int rank = 0; rank < hits.size(); rank++) {
+			Map<String, Object> row = new HashMap<>();
+			row.put("ID", hits.getId(rank));
+			row.put("HELM", idWithHELM.get(hits.getId(rank)));
+			row.put("Similarity", hits.getScore(rank));
+			rows.add(row);
 		}
+		return rows;
 	}
 
 	@Override
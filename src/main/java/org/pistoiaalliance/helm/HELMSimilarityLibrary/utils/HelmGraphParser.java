@@ -0,0 +1,304 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.helm.notation2.parser.exceptionparser.NotationException;
+
+/**
+ * HelmGraphParser class builds the compact moleculeGraph directly from a HELM string for the
+ * common notations: PEPTIDE, RNA and CHEM polymers of plain monomers and connections between
+ * single monomers, without groups or annotations. The graph is the same as the one of
+ * {@link MoleculeGraphUtils#buildCompactMoleculeGraph(List, List)} for the parsed notation.
+ * Anything else, like repetitions, monomer lists, inline SMILES, annotations, hydrogen bond
+ * groups or invalid notations, is not parsed and has to be read by the HELM toolkit instead.
+ */
+public final class HelmGraphParser {
+    private static final String VERSION = "V2.0";
+
+    private HelmGraphParser() {
+    }
+
+    /**
+     * Builds the compact moleculeGraph of a HELM1 or HELM2 string.
+     *
+     * @param helm the HELM string
+     * @return the compact moleculeGraph, or null if the notation is not one of the common
+     * notations and has to be parsed by the HELM toolkit
+     */
+    public static MoleculeGraph parse(String helm) {
+        // Polymers, connections, groups, annotations and version, the last three are empty or the version.
+        int polymersEnd = helm.indexOf('$');
+        int connectionsEnd = polymersEnd < 0 ? -1 : helm.indexOf('$', polymersEnd + 1);
+        if (connectionsEnd < 0 || !helm.startsWith("$$", connectionsEnd + 1)) {
+            return null;
+        }
+        String version = helm.substring(connectionsEnd + 3);
+        if (!version.isEmpty() && !version.equals(VERSION)) {
+            return null;
+        }
+        try {
+            MoleculeGraph.Builder builder = new MoleculeGraph.Builder();
+            Map<String, int[]> polymers = new HashMap<>();
+            if (!parsePolymers(helm, 0, polymersEnd, builder, polymers)
+                    || !parseConnections(helm, polymersEnd + 1, connectionsEnd, builder, polymers)) {
+                return null;
+            }
+            return builder.build();
+        } catch (NotationException | RuntimeException e) {
+            // The toolkit reports the error of an invalid notation.
+            return null;
+        }
+    }
+
+    /**
+     * Parses the polymers "ID{monomers}" separated by "|" and adds their monomers and bonds to the graph.
+     * The first vertex and the number of vertices of every polymer are stored by polymer ID.
+     */
+    private static boolean parsePolymers(String helm, int start, int end, MoleculeGraph.Builder builder,
+                                         Map<String, int[]> polymers) throws NotationException {
+        int position = start;
+        while (position < end) {
+            int open = helm.indexOf('{', position);
+            if (open < 0 || open >= end) {
+                return false;
+            }
+            String polymerID = helm.substring(position, open);
+            Vertex.Type type = getPolymerType(polymerID);
+            int close = helm.indexOf('}', open);
+            if (type == null || close < 0 || close >= end || polymers.containsKey(polymerID)) {
+                return false;
+            }
+            int offset = builder.getVertexCount();
+            List<String> units = splitUnits(helm, open + 1, close);
+            if (units == null || !addPolymer(type, units, builder)) {
+                return false;
+            }
+            polymers.put(polymerID, new int[]{offset, builder.getVertexCount() - offset});
+            position = close + 1;
+            if (position < end) {
+                if (helm.charAt(position) != '|') {
+                    return false;
+                }
+                position++;
+                if (position == end) {
+                    return false;
+                }
+            }
+        }
+        return !polymers.isEmpty();
+    }
+
+    private static Vertex.Type getPolymerType(String polymerID) {
+        Vertex.Type type;
+        int digits;
+        if (polymerID.startsWith("PEPTIDE")) {
+            type = Vertex.Type.PEPTIDE;
+            digits = "PEPTIDE".length();
+        } else if (polymerID.startsWith("RNA")) {
+            type = Vertex.Type.RNA;
+            digits = "RNA".length();
+        } else if (polymerID.startsWith("CHEM")) {
+            type = Vertex.Type.CHEM;
+            digits = "CHEM".length();
+        } else {
+            return null;
+        }
+        return isNumber(polymerID, digits, polymerID.length()) ? type : null;
+    }
+
+    /**
+     * Splits the monomers of a polymer at the dots outside of square brackets.
+     */
+    private static List<String> splitUnits(String helm, int start, int end) {
+        List<String> units = new ArrayList<>();
+        int unitStart = start;
+        boolean inBrackets = false;
+        for (int i = start; i < end; i++) {
+            char c = helm.charAt(i);
+            if (c == '[') {
+                if (inBrackets) {
+                    return null;
+                }
+                inBrackets = true;
+            } else if (c == ']') {
+                inBrackets = false;
+            } else if (c == '.' && !inBrackets) {
+                units.add(helm.substring(unitStart, i));
+                unitStart = i + 1;
+            }
+        }
+        units.add(helm.substring(unitStart, end));
+        return inBrackets ? null : units;
+    }
+
+    private static boolean addPolymer(Vertex.Type type, List<String> units, MoleculeGraph.Builder builder)
+            throws NotationException {
+        int offset = builder.getVertexCount();
+        if (type == Vertex.Type.PEPTIDE) {
+            for (String unit : units) {
+                if (!isMonomer(unit, 0, unit.length())) {
+                    return false;
+                }
+                int vertex = builder.addVertex(unit, Vertex.Type.PEPTIDE, unit.length() > 1, false);
+                if (vertex > offset) {
+                    builder.addEdge(vertex - 1, vertex);
+                }
+            }
+        } else if (type == Vertex.Type.RNA) {
+            for (String unit : units) {
+                if (!isNucleotide(unit)) {
+                    return false;
+                }
+            }
+            MoleculeGraphUtils.addRNAPolymer(units, builder);
+        } else {
+            // A CHEM polymer is one monomer, which may be written without brackets.
+            String unit = units.get(0);
+            if (units.size() != 1 || unit.isEmpty() || !(isMonomer(unit, 0, unit.length()) || isName(unit, 0,
+                    unit.length()))) {
+                return false;
+            }
+            builder.addVertex(unit, Vertex.Type.CHEM, false, false);
+        }
+        return true;
+    }
+
+    /**
+     * Checks for a nucleotide of a sugar, a base in parentheses and an optional phosphate, like "R(A)P"
+     * or "[dR]([5meC])[sP]", or for a single monomer like "P".
+     */
+    private static boolean isNucleotide(String unit) {
+        int sugarEnd = skipMonomer(unit, 0);
+        if (sugarEnd == 0) {
+            return false;
+        }
+        if (sugarEnd == unit.length()) {
+            return true;
+        }
+        if (unit.charAt(sugarEnd) != '(') {
+            return false;
+        }
+        int baseEnd = skipMonomer(unit, sugarEnd + 1);
+        if (baseEnd == sugarEnd + 1 || baseEnd >= unit.length() || unit.charAt(baseEnd) != ')') {
+            return false;
+        }
+        return skipMonomer(unit, baseEnd + 1) == unit.length();
+    }
+
+    /**
+     * Gets the end of a monomer that starts at the given position, or the position itself if there is none.
+     */
+    private static int skipMonomer(String unit, int start) {
+        if (start >= unit.length()) {
+            return start;
+        }
+        if (unit.charAt(start) == '[') {
+            int close = unit.indexOf(']', start);
+            return close > 0 && isMonomer(unit, start, close + 1) ? close + 1 : start;
+        }
+        return isLetter(unit.charAt(start)) ? start + 1 : start;
+    }
+
+    /**
+     * Checks for a monomer of one letter or a name of several characters in square brackets.
+     */
+    private static boolean isMonomer(String s, int start, int end) {
+        if (end - start == 1) {
+            return isLetter(s.charAt(start));
+        }
+        return end - start > 3 && s.charAt(start) == '[' && s.charAt(end - 1) == ']'
+                && isName(s, start + 1, end - 1);
+    }
+
+    private static boolean isName(String s, int start, int end) {
+        for (int i = start; i < end; i++) {
+            char c = s.charAt(i);
+            if (!(isLetter(c) || (c >= '0' && c <= '9') || c == '_' || c == '-')) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isLetter(char c) {
+        return (c >= 'A' && c <= 'Z') || (c >= 'a' && c <= 'z');
+    }
+
+    private static boolean isNumber(String s, int start, int end) {
+        if (start == end || s.charAt(start) == '0') {
+            return false;
+        }
+        for (int i = start; i < end; i++) {
+            if (s.charAt(i) < '0' || s.charAt(i) > '9') {
+                return false;
+            }
+        }
+        return end - start < 9;
+    }
+
+    /**
+     * Parses the connections "source,target,unit:attachment-unit:attachment" separated by "|" and adds
+     * their bonds to the graph.
+     */
+    private static boolean parseConnections(String helm, int start, int end, MoleculeGraph.Builder builder,
+                                            Map<String, int[]> polymers) {
+        int position = start;
+        while (position < end) {
+            int connectionEnd = helm.indexOf('|', position);
+            if (connectionEnd < 0 || connectionEnd > end) {
+                connectionEnd = end;
+            }
+            String[] parts = helm.substring(position, connectionEnd).split(",", -1);
+            if (parts.length != 3) {
+                return false;
+            }
+            String[] ends = parts[2].split("-", -1);
+            if (ends.length != 2) {
+                return false;
+            }
+            int source = getVertex(polymers.get(parts[0]), ends[0]);
+            int target = getVertex(polymers.get(parts[1]), ends[1]);
+            if (source < 0 || target < 0) {
+                return false;
+            }
+            builder.addEdge(source, target);
+            position = connectionEnd + 1;
+            if (position == end) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Gets the vertex of one end of a connection like "3:R3", or -1 if it is not a single monomer of the polymer.
+     */
+    private static int getVertex(int[] polymer, String connectionEnd) {
+        int colon = connectionEnd.indexOf(':');
+        if (polymer == null || colon < 0 || !isNumber(connectionEnd, 0, colon)
+                || !isName(connectionEnd, colon + 1, connectionEnd.length()) || colon + 1 == connectionEnd.length()) {
+            return -1;
+        }
+        int unit = Integer.parseInt(connectionEnd.substring(0, colon));
+        return unit <= polymer[1] ? polymer[0] + unit - 1 : -1;
+    }
+}
@@ -0,0 +1,134 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
+
+import java.util.Arrays;
+
+/**
+ * LongHashSet class is a set of primitive longs with open addressing and linear probing,
+ * so adding a value does not create any objects. The value 0 is stored in a separate flag
+ * because it marks the free slots of the table. Not thread-safe.
+ */
+public final class LongHashSet {
+    private static final int MIN_CAPACITY = 16;
+
+    private long[] table;
+    private int mask;
+    private int shift;
+    private int size;
+    private boolean containsZero;
+
+    public LongHashSet() {
+        this(MIN_CAPACITY);
+    }
+
+    /**
+     * @param expectedSize the number of values the set can hold without growing
+     */
+    public LongHashSet(int expectedSize) {
+        int capacity = MIN_CAPACITY;
+        while (capacity * 3 / 4 < expectedSize) {
+            capacity <<= 1;
+        }
+        resize(capacity);
+    }
+
+    /**
+     * Adds a value to the set.
+     *
+     * @param value the value
+     * @return true if the value was not contained before
+     */
+    public boolean add(long value) {
+        if (value == 0) {
+            if (containsZero) {
+                return false;
+            }
+            containsZero = true;
+            size++;
+            return true;
+        }
+        int slot = slot(value);
+        while (table[slot] != 0) {
+            if (table[slot] == value) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+        table[slot] = value;
+        if (++size > table.length * 3 / 4) {
+            grow();
+        }
+        return true;
+    }
+
+    public boolean contains(long value) {
+        if (value == 0) {
+            return containsZero;
+        }
+        int slot = slot(value);
+        while (table[slot] != 0) {
+            if (table[slot] == value) {
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return false;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Removes all values and keeps the capacity of the set.
+     */
+    public void clear() {
+        Arrays.fill(table, 0);
+        size = 0;
+        containsZero = false;
+    }
+
+    private int slot(long value) {
+        // Fibonacci hashing, the upper bits of the product depend on all bits of the value.
+        return (int) ((value * 0x9E3779B97F4A7C15L) >>> shift);
+    }
+
+    private void resize(int capacity) {
+        table = new long[capacity];
+        mask = capacity - 1;
+        shift = Long.SIZE - Integer.numberOfTrailingZeros(capacity);
+    }
+
+    private void grow() {
+        long[] oldTable = table;
+        resize(oldTable.length * 2);
+        for (long value : oldTable) {
+            if (value != 0) {
+                int slot = slot(value);
+                while (table[slot] != 0) {
+                    slot = (slot + 1) & mask;
+                }
+                table[slot] = value;
+            }
+        }
+    }
+}
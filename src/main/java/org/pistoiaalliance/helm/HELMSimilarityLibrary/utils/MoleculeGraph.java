@@ -0,0 +1,229 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * MoleculeGraph class is an immutable moleculeGraph in compressed sparse row form. The
+ * neighbours of vertex v are the entries from getNeighbourStart(v) to getNeighbourEnd(v) - 1
+ * of one int array, and the monomer, type and flags of every vertex are stored in arrays
+ * indexed by the vertex. The monomers are referred to by their ids in the
+ * {@link MonomerDictionary}. A graph can be shared by several threads.
+ */
+public final class MoleculeGraph {
+    private static final Vertex.Type[] TYPES = Vertex.Type.values();
+    private static final byte NON_NATURAL = 1;
+    private static final byte UNIQUE_UNIT = 2;
+
+    private final int[] offsets;
+    private final int[] neighbours;
+    private final int[] monomerIds;
+    private final byte[] types;
+    private final byte[] flags;
+
+    private MoleculeGraph(int[] offsets, int[] neighbours, int[] monomerIds, byte[] types, byte[] flags) {
+        this.offsets = offsets;
+        this.neighbours = neighbours;
+        this.monomerIds = monomerIds;
+        this.types = types;
+        this.flags = flags;
+    }
+
+    /**
+     * Converts a moleculeGraph of vertices, the vertex indices have to be their positions in the graph.
+     *
+     * @param moleculeGraph the moleculeGraph
+     * @return compact moleculeGraph with the same vertices and neighbours
+     */
+    public static MoleculeGraph fromGraph(Graph moleculeGraph) {
+        List<Vertex> vertices = moleculeGraph.getVertices();
+        Builder builder = new Builder();
+        for (Vertex vertex : vertices) {
+            builder.addVertex(vertex.getMonomer().getUnit(), vertex.monomerType, vertex.isNonNatural(),
+                    vertex.hasUniqueUnit());
+        }
+        for (int i = 0; i < vertices.size(); i++) {
+            for (Vertex neighbour : vertices.get(i).getNeighbourList()) {
+                builder.addArc(i, neighbour.getIndex());
+            }
+        }
+        return builder.build();
+    }
+
+    public int getVertexCount() {
+        return monomerIds.length;
+    }
+
+    /**
+     * @param vertex the vertex index
+     * @return position of the first neighbour of the vertex, see {@link #getNeighbour(int)}
+     */
+    public int getNeighbourStart(int vertex) {
+        return offsets[vertex];
+    }
+
+    /**
+     * @param vertex the vertex index
+     * @return position after the last neighbour of the vertex
+     */
+    public int getNeighbourEnd(int vertex) {
+        return offsets[vertex + 1];
+    }
+
+    /**
+     * @param position a position between the neighbour start and end of a vertex
+     * @return the vertex index of the neighbour at that position
+     */
+    public int getNeighbour(int position) {
+        return neighbours[position];
+    }
+
+    public int getNeighbourCount(int vertex) {
+        return offsets[vertex + 1] - offsets[vertex];
+    }
+
+    /**
+     * @param vertex the vertex index
+     * @return the id of the monomer of the vertex in the {@link MonomerDictionary}
+     */
+    public int getMonomerId(int vertex) {
+        return monomerIds[vertex];
+    }
+
+    /**
+     * @param vertex the vertex index
+     * @return the monomer unit of the vertex, as in the HELM notation
+     */
+    public String getUnit(int vertex) {
+        return MonomerDictionary.getInstance().getMonomerUnit(monomerIds[vertex]);
+    }
+
+    public Vertex.Type getType(int vertex) {
+        return types[vertex] < 0 ? null : TYPES[types[vertex]];
+    }
+
+    public boolean isNonNatural(int vertex) {
+        return (flags[vertex] & NON_NATURAL) != 0;
+    }
+
+    public boolean hasUniqueUnit(int vertex) {
+        return (flags[vertex] & UNIQUE_UNIT) != 0;
+    }
+
+    /**
+     * Builder class collects the vertices and edges of a MoleculeGraph. Vertices get consecutive
+     * indices in the order they are added.
+     */
+    public static final class Builder {
+        private final MonomerDictionary dictionary = MonomerDictionary.getInstance();
+        private int[] monomerIds = new int[16];
+        private byte[] types = new byte[16];
+        private byte[] flags = new byte[16];
+        private int vertexCount;
+        // Source and target vertex of every directed arc.
+        private int[] arcs = new int[32];
+        private int arcCount;
+
+        /**
+         * Adds a vertex.
+         *
+         * @param unit the monomer unit, as in the HELM notation
+         * @param type the polymer type of the monomer
+         * @param nonNatural true if the monomer is not a natural monomer
+         * @param uniqueUnit true if the unit of the monomer is unique
+         * @return the index of the vertex
+         */
+        public int addVertex(String unit, Vertex.Type type, boolean nonNatural, boolean uniqueUnit) {
+            return addVertex(dictionary.getMonomerId(unit, type, nonNatural, uniqueUnit), type, nonNatural,
+                    uniqueUnit);
+        }
+
+        /**
+         * Adds a vertex for a monomer of the {@link MonomerDictionary}.
+         *
+         * @param monomerId the id of the monomer in the dictionary
+         * @return the index of the vertex
+         */
+        public int addVertex(int monomerId) {
+            return addVertex(monomerId, dictionary.getType(monomerId), dictionary.isNonNatural(monomerId),
+                    dictionary.hasUniqueUnit(monomerId));
+        }
+
+        private int addVertex(int monomerId, Vertex.Type type, boolean nonNatural, boolean uniqueUnit) {
+            if (vertexCount == monomerIds.length) {
+                monomerIds = Arrays.copyOf(monomerIds, 2 * vertexCount);
+                types = Arrays.copyOf(types, 2 * vertexCount);
+                flags = Arrays.copyOf(flags, 2 * vertexCount);
+            }
+            monomerIds[vertexCount] = monomerId;
+            types[vertexCount] = type == null ? -1 : (byte) type.ordinal();
+            flags[vertexCount] = (byte) ((nonNatural ? NON_NATURAL : 0) | (uniqueUnit ? UNIQUE_UNIT : 0));
+            return vertexCount++;
+        }
+
+        public int getVertexCount() {
+            return vertexCount;
+        }
+
+        /**
+         * Adds an edge between two vertices, each of them becomes a neighbour of the other.
+         */
+        public void addEdge(int source, int target) {
+            addArc(source, target);
+            addArc(target, source);
+        }
+
+        /**
+         * Adds target as a neighbour of source.
+         */
+        void addArc(int source, int target) {
+            if (source < 0 || source >= vertexCount || target < 0 || target >= vertexCount) {
+                throw new IndexOutOfBoundsException("Edge " + source + "-" + target + " is not within the "
+                        + vertexCount + " vertices of the graph.");
+            }
+            if (2 * arcCount == arcs.length) {
+                arcs = Arrays.copyOf(arcs, 2 * arcs.length);
+            }
+            arcs[2 * arcCount] = source;
+            arcs[2 * arcCount + 1] = target;
+            arcCount++;
+        }
+
+        /**
+         * @return the graph of the added vertices and edges, the neighbours of each vertex in the order
+         * they were added
+         */
+        public MoleculeGraph build() {
+            int[] offsets = new int[vertexCount + 1];
+            for (int i = 0; i < arcCount; i++) {
+                offsets[arcs[2 * i] + 1]++;
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            int[] neighbours = new int[arcCount];
+            int[] next = Arrays.copyOf(offsets, vertexCount);
+            for (int i = 0; i < arcCount; i++) {
+                neighbours[next[arcs[2 * i]]++] = arcs[2 * i + 1];
+            }
+            return new MoleculeGraph(offsets, neighbours, Arrays.copyOf(monomerIds, vertexCount),
+                    Arrays.copyOf(types, vertexCount), Arrays.copyOf(flags, vertexCount));
+        }
+    }
+}
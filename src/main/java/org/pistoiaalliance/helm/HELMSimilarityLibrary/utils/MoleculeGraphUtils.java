@@ -17,13 +17,14 @@
 package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
 import org.helm.notation2.parser.exceptionparser.NotationException;
 import org.helm.notation2.parser.notation.connection.ConnectionNotation;
-import org.helm.notation2.parser.notation.polymer.MonomerNotationUnitRNA;
+import org.helm.notation2.parser.notation.polymer.MonomerNotation;
 import org.helm.notation2.parser.notation.polymer.PolymerNotation;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -31,13 +32,12 @@ import org.slf4j.LoggerFactory;
 /**
  * MoleculeGraphUtils class implements a moleculeGraph of type Graph with a list of
  * vertices and edges between vertices that are represented by neighbors for
- * each vertex.
+ * each vertex. The methods keep no state between calls, so molecule graphs can be
+ * built from several threads at the same time.
  *
  * @author bueltel
  */
 public class MoleculeGraphUtils {
-    private static Map<String, Integer> polymerIDMap = new HashMap<>();
-    private static List<Integer> polymerIDList = new ArrayList<>();
     private static final Logger LOG = LoggerFactory.getLogger(MoleculeGraphUtils.class);
 
     /**
@@ -53,10 +53,13 @@ public class MoleculeGraphUtils {
     public static Graph buildMoleculeGraph(List<PolymerNotation> listPolymerNotations,
                                            List<ConnectionNotation> listOfConnections) throws NotationException {
         Graph moleculeGraph = new Graph();
+        // Index of the first vertex of each polymer, the monomers of a polymer are consecutive vertices.
+        Map<String, Integer> polymerOffsets = new HashMap<>();
         LOG.debug("Building molecule graph...");
 
         // Iterate over every polymer of the HELM notation
         for (int idx = 0; idx < listPolymerNotations.size(); idx++) {
+            polymerOffsets.put(listPolymerNotations.get(idx).getPolymerID().toString(), moleculeGraph.vertexCount());
 
             // If polymer is RNA, consider that ribose and phosphate are backbone and bases are branching from ribose
             if (listPolymerNotations.get(idx).getListMonomers().get(0).getType().equalsIgnoreCase("RNA")) {
@@ -72,9 +75,6 @@ public class MoleculeGraphUtils {
             else if (listPolymerNotations.get(idx).getListMonomers().get(0).getType().equalsIgnoreCase("CHEM")) {
                 moleculeGraph.addAllVertices(buildChemPart(listPolymerNotations.get(idx), idx));
             }
-
-            // Map to save the order of polymers in the notation.
-            polymerIDMap.put(listPolymerNotations.get(idx).getPolymerID().toString(), idx);
         }
 
         // Save an index for each vertex to be able to iterate successionally in depth first search.
@@ -84,14 +84,60 @@ public class MoleculeGraphUtils {
 
         // Check for intramolecular or intermolecular connections.
         if (!listOfConnections.isEmpty()) {
-            moleculeGraph = addConnections(moleculeGraph, listPolymerNotations, listOfConnections);
+            moleculeGraph = addConnections(moleculeGraph, polymerOffsets, listOfConnections);
         }
 
-        polymerIDList.clear();
-        polymerIDMap.clear();
         return moleculeGraph;
     }
 
+    /**
+     * Method builds a compact moleculeGraph from a list of PolymerNotations and a list of Connections,
+     * without creating a Vertex for every monomer. The graph has the same vertices and neighbours as
+     * the one of {@link #buildMoleculeGraph(List, List)}.
+     *
+     * @param listPolymerNotations list of polymer notations
+     * @param listOfConnections list of connections
+     * @return The compact moleculeGraph of a list of polymer notations and connections
+     * @throws NotationException if anything goes wrong
+     */
+    public static MoleculeGraph buildCompactMoleculeGraph(List<PolymerNotation> listPolymerNotations,
+                                                          List<ConnectionNotation> listOfConnections)
+            throws NotationException {
+        MoleculeGraph.Builder builder = new MoleculeGraph.Builder();
+        Map<String, Integer> polymerOffsets = new HashMap<>();
+
+        for (PolymerNotation polymer : listPolymerNotations) {
+            int offset = builder.getVertexCount();
+            polymerOffsets.put(polymer.getPolymerID().toString(), offset);
+            String type = polymer.getListMonomers().get(0).getType();
+
+            if (type.equalsIgnoreCase("RNA")) {
+                List<String> units = new ArrayList<>(polymer.getListMonomers().size());
+                for (MonomerNotation monomer : polymer.getListMonomers()) {
+                    units.add(monomer.getUnit());
+                }
+                addRNAPolymer(units, builder);
+            } else if (type.equalsIgnoreCase("PEPTIDE")) {
+                for (MonomerNotation monomer : polymer.getListMonomers()) {
+                    int vertex = builder.addVertex(monomer.getUnit(), Vertex.Type.PEPTIDE,
+                            monomer.getUnit().length() > 1, false);
+                    if (vertex > offset) {
+                        builder.addEdge(vertex - 1, vertex);
+                    }
+                }
+            } else if (type.equalsIgnoreCase("CHEM")) {
+                builder.addVertex(polymer.getListMonomers().get(0).getUnit(), Vertex.Type.CHEM, false, false);
+            }
+        }
+
+        for (ConnectionNotation connection : listOfConnections) {
+            builder.addEdge(getVertexIndex(polymerOffsets, connection.getSourceId().toString(),
+                    connection.getSourceUnit()),
+                    getVertexIndex(polymerOffsets, connection.getTargetId().toString(), connection.getTargetUnit()));
+        }
+        return builder.build();
+    }
+
     /**
      * Builds the RNA part of the molecule.
      *
@@ -103,17 +149,13 @@ public class MoleculeGraphUtils {
      */
     public static Graph buildRNAPart(PolymerNotation polymer, int polymerNumber) throws NotationException {
         Graph moleculeGraph = new Graph();
-        List<String> monomerUnitTypes = new ArrayList<>();
         LOG.debug("Building RNA part of molecule graph.");
 
-        for (int n = 0; n < polymer.getListMonomers().size(); n++) {
-            MonomerNotationUnitRNA unit = new MonomerNotationUnitRNA(polymer.getListMonomers().get(n).getUnit(), "RNA");
-
-            // Add monomerUnit vertices to the graph, save a flag for ribose, base and phosphate,
-            // keep track of the polymer ID for each monomer in polymerIDList to be able to check
-            // if two monomers are of the same polymer.
-            for (int m = 0; m < unit.getContents().size(); m++) {
-                moleculeGraph.addVertex(unit.getContents().get(m));
+        // Decomposed nucleotides are cached, their ribose, base and phosphate vertices are copied from the template.
+        List<NucleotideTemplate> templates = getNucleotideTemplates(polymer);
+        for (NucleotideTemplate template : templates) {
+            for (MonomerNotation monomer : template.getMonomers()) {
+                moleculeGraph.addVertex(monomer);
                 Vertex lastAdded = moleculeGraph.getVertices().get(moleculeGraph.getVertices().size() - 1);
                 lastAdded.monomerType = Vertex.Type.RNA;
                 if (lastAdded.getMonomer().getUnit().length() > 1) {
@@ -121,46 +163,84 @@ public class MoleculeGraphUtils {
                 } else {
                     lastAdded.setHasUniqueUnit(true);
                 }
-                monomerUnitTypes.add(unit.getInformation().get(m));
-                polymerIDList.add(polymerNumber);
             }
         }
 
-        for (int i = 0; i < moleculeGraph.vertexCount() - 1; i++) {
-            Vertex currentVertex = moleculeGraph.getVertices().get(i);
-            String typeCurrent = monomerUnitTypes.get(i);
-
-            if (typeCurrent.equalsIgnoreCase("R")) {
-                Vertex secondVertex = moleculeGraph.getVertices().get(i + 1);
-                String typeSecond = monomerUnitTypes.get(i + 1);
-                if (typeSecond.equalsIgnoreCase("P")) {
-                    currentVertex.addBothNeighbours(secondVertex);
-                } else if (typeSecond.equalsIgnoreCase("X")) {
-                    currentVertex.addBothNeighbours(secondVertex);
-
+        int[] edges = getRNAEdges(templates, moleculeGraph.vertexCount());
+        for (int e = 0; e < edges.length; e += 2) {
+            moleculeGraph.getVertices().get(edges[e]).addBothNeighbours(moleculeGraph.getVertices().get(edges[e + 1]));
+        }
+        LOG.debug("Building RNA part of molecule graph successful.");
+        return moleculeGraph;
+    }
 
-                    if ((i + 2) < moleculeGraph.vertexCount()) {
-                        Vertex thirdVertex = moleculeGraph.getVertices().get(i + 2);
-                        String typeThird = monomerUnitTypes.get(i + 2);
+    /**
+     * Gets the cached templates of the nucleotides of an RNA polymer.
+     */
+    private static List<NucleotideTemplate> getNucleotideTemplates(PolymerNotation polymer) throws NotationException {
+        List<NucleotideTemplate> templates = new ArrayList<>(polymer.getListMonomers().size());
+        for (MonomerNotation monomer : polymer.getListMonomers()) {
+            templates.add(NucleotideTemplate.get(monomer.getUnit()));
+        }
+        return templates;
+    }
 
-                        if (typeThird.equalsIgnoreCase("P")) {
-                            currentVertex.addBothNeighbours(thirdVertex);
-                        }
-                    }
-                }
-            } else if (typeCurrent.equalsIgnoreCase("P")) {
-                Vertex secondVertex = moleculeGraph.getVertices().get(i + 1);
-                String typeSecond = monomerUnitTypes.get(i + 1);
-                if (typeSecond.equalsIgnoreCase("R")) {
-                    currentVertex.addBothNeighbours(secondVertex);
-                }
-            } else {
-                continue;
+    /**
+     * Adds the monomers and bonds of an RNA polymer to a compact moleculeGraph.
+     *
+     * @param units the nucleotide units of the polymer, like "R(A)P"
+     * @param builder the builder of the compact moleculeGraph
+     * @throws NotationException if a unit cannot be decomposed
+     */
+    static void addRNAPolymer(List<String> units, MoleculeGraph.Builder builder) throws NotationException {
+        int offset = builder.getVertexCount();
+        List<NucleotideTemplate> templates = new ArrayList<>(units.size());
+        for (String unit : units) {
+            NucleotideTemplate template = NucleotideTemplate.get(unit);
+            for (int m = 0; m < template.size(); m++) {
+                builder.addVertex(template.getMonomerId(m));
             }
+            templates.add(template);
+        }
+        int[] edges = getRNAEdges(templates, builder.getVertexCount() - offset);
+        for (int e = 0; e < edges.length; e += 2) {
+            builder.addEdge(offset + edges[e], offset + edges[e + 1]);
+        }
+    }
 
+    /**
+     * Gets the bonds of an RNA polymer: ribose to phosphate, ribose to base and phosphate to the next ribose.
+     * The bonds within a nucleotide are taken from its template, only the bonds to the following nucleotides
+     * are looked up. The bonds are sorted by their first monomer.
+     *
+     * @param templates the templates of the nucleotides of the polymer
+     * @param monomerCount the number of monomers of the polymer
+     * @return the indices of both monomers of each bond, one bond after the other
+     */
+    private static int[] getRNAEdges(List<NucleotideTemplate> templates, int monomerCount) {
+        byte[] kinds = new byte[monomerCount];
+        int position = 0;
+        for (NucleotideTemplate template : templates) {
+            for (int m = 0; m < template.size(); m++) {
+                kinds[position++] = template.getKind(m);
+            }
         }
-        LOG.debug("Building RNA part of molecule graph successful.");
-        return moleculeGraph;
+        int[] edges = new int[4 * monomerCount];
+        int count = 0;
+        int start = 0;
+        for (NucleotideTemplate template : templates) {
+            for (int e = 0; e < template.getEdgeCount(); e++) {
+                edges[count++] = start + template.getEdgeSource(e);
+                edges[count++] = start + template.getEdgeTarget(e);
+            }
+            // Only the last two monomers of a nucleotide can be bonded to the following ones.
+            int end = start + template.size();
+            for (int i = Math.max(start, end - 2); i < end; i++) {
+                count = NucleotideTemplate.addEdges(kinds, monomerCount, i, end, edges, count);
+            }
+            start = end;
+        }
+        return Arrays.copyOf(edges, count);
     }
 
     /**
@@ -174,8 +254,7 @@ public class MoleculeGraphUtils {
         Graph moleculeGraph = new Graph();
         LOG.debug("Building PEPTIDE part of molecule graph.");
 
-        // Add monomer vertices to the graph, keep track of the polymer ID for each monomer
-        // in polymerIDList to be able to check if two monomers are of the same polymer
+        // Add monomer vertices to the graph.
         for (int l = 0; l < polymer.getListMonomers().size(); l++) {
             // create nodes for each monomer and save index for each monomer respectively
             moleculeGraph.addVertex(polymer.getListMonomers().get(l));
@@ -184,7 +263,6 @@ public class MoleculeGraphUtils {
             if (lastAdded.getMonomer().getUnit().length() > 1) {
                 lastAdded.setNonNatural();
             }
-            polymerIDList.add(polymerNumber);
         }
 
         // Create edges (bonds) between nodes (monomers) if peptide consists of more than two monomers.
@@ -208,12 +286,9 @@ public class MoleculeGraphUtils {
         Graph moleculeGraph = new Graph();
         LOG.debug("Building CHEM part of molecule graph.");
 
-        // add monomer vertex to the graph, keep track of the polymer ID
-        // for the monomer in polymerIDList to be able to check if two
-        // monomers are of the same polymer
+        // add monomer vertex to the graph
         moleculeGraph.addVertex(polymer.getListMonomers().get(0));
         moleculeGraph.getVertices().get(0).monomerType = Vertex.Type.CHEM;
-        polymerIDList.add(polymerNumber);
         LOG.debug("Building CHEM part of molecule graph successful.");
         return moleculeGraph;
     }
@@ -222,76 +297,45 @@ public class MoleculeGraphUtils {
      * Adds the connections between polymers of the molecule.
      *
      * @param moleculeGraph The moleculeGraph of a HELM notation without connections
-     * @param polymerList list of polymers
+     * @param polymerOffsets index of the first vertex of each polymer by polymer ID
      * @param listOfConnections list of connections
      * @return The moleculeGraph of a HELM notation with connections
+     * @throws NotationException if a connection refers to a polymer that is not part of the graph
      */
-    public static Graph addConnections(Graph moleculeGraph, List<PolymerNotation> polymerList,
-                                       List<ConnectionNotation> listOfConnections) {
+    public static Graph addConnections(Graph moleculeGraph, Map<String, Integer> polymerOffsets,
+                                       List<ConnectionNotation> listOfConnections) throws NotationException {
         LOG.debug("Adding connections to molecule graph.");
 
         for (int index = 0; index < listOfConnections.size(); index++) {
             ConnectionNotation connection = listOfConnections.get(index);
+            int sourceIdx = getVertexIndex(polymerOffsets, connection.getSourceId().toString(),
+                    connection.getSourceUnit());
+            int targetIdx = getVertexIndex(polymerOffsets, connection.getTargetId().toString(),
+                    connection.getTargetUnit());
 
-            if (connection.getSourceId().toString().equals(connection.getTargetId().toString())) {
-                // There is a connection between monomers of the same polymer.
-                LOG.debug("Adding connection between monomers of same polymer.");
-                String polymerID = connection.getSourceId().toString();
-                Integer polymerIdx = polymerIDMap.get(polymerID);
-                int idxi = 0;
-                int idxj = 0;
-                if (polymerIdx == 0) {
-                    idxi = Integer.parseInt(connection.getSourceUnit()) - 1;
-                    idxj = Integer.parseInt(connection.getTargetUnit()) - 1;
-                } else if (polymerIdx > 0) {
-                    for (int polymerNumber = 0; polymerNumber < polymerIdx; polymerNumber++) {
-                        idxi += polymerList.get(polymerNumber).getListMonomers().size();
-                    }
-                    idxj = idxi + Integer.parseInt(connection.getTargetUnit()) - 1;
-                    idxi += Integer.parseInt(connection.getSourceUnit()) - 1;
-                }
-                Vertex leftVertex = moleculeGraph.getVertices().get(idxi);
-                Vertex rightVertex = moleculeGraph.getVertices().get(idxj);
-                leftVertex.addBothNeighbours(rightVertex);
-                LOG.debug("Adding connection between monomers of same polymer successful.");
-            } else {
-                // There is a connection between monomers of different polymers.
-                LOG.debug("Adding connection between monomers of different polymers.");
-                String polymerID1 = connection.getSourceId().toString();
-                String polymerID2 = connection.getTargetId().toString();
-                Integer polymerIdx1 = polymerIDMap.get(polymerID1);
-                Integer polymerIdx2 = polymerIDMap.get(polymerID2);
-                int idxii = 0;
-                if (polymerIdx1 == 0) {
-                    idxii = Integer.parseInt(connection.getSourceUnit()) - 1;
-                } else if (polymerIdx1 > 0) {
-                    for (int polymerNumber = 0; polymerNumber < moleculeGraph.vertexCount(); polymerNumber++) {
-                        if (polymerIDList.get(polymerNumber) == polymerIdx1) {
-                            break;
-                        }
-                        idxii++;
-                    }
-                    idxii += Integer.parseInt(connection.getSourceUnit()) - 1;
-                }
-                int idxjj = 0;
-                if (polymerIdx2 == 0) {
-                    idxjj = Integer.parseInt(connection.getTargetUnit()) - 1;
-                } else if (polymerIdx2 > 0) {
-                    for (int polymerNumber2 = 0; polymerNumber2 < moleculeGraph.vertexCount(); polymerNumber2++) {
-                        if (polymerIDList.get(polymerNumber2) == polymerIdx2) {
-                            break;
-                        }
-                        idxjj++;
-                    }
-                    idxjj += Integer.parseInt(connection.getTargetUnit()) - 1;
-                }
-                Vertex leftVertex = moleculeGraph.getVertices().get(idxii);
-                Vertex rightVertex = moleculeGraph.getVertices().get(idxjj);
-                leftVertex.addBothNeighbours(rightVertex);
-                LOG.debug("Adding connection between monomers of different polymers successful.");
-            }
+            Vertex leftVertex = moleculeGraph.getVertices().get(sourceIdx);
+            Vertex rightVertex = moleculeGraph.getVertices().get(targetIdx);
+            leftVertex.addBothNeighbours(rightVertex);
         }
         LOG.debug("Adding connections to molecule graph successful.");
         return moleculeGraph;
     }
+
+    /**
+     * Gets the vertex index of a monomer from the offset of its polymer and its position in the polymer.
+     *
+     * @param polymerOffsets index of the first vertex of each polymer by polymer ID
+     * @param polymerID the polymer ID of the monomer
+     * @param unit the position of the monomer in the polymer, starting at 1
+     * @return the vertex index of the monomer
+     * @throws NotationException if the polymer is not part of the graph
+     */
+    private static int getVertexIndex(Map<String, Integer> polymerOffsets, String polymerID, String unit)
+            throws NotationException {
+        Integer offset = polymerOffsets.get(polymerID);
+        if (offset == null) {
+            throw new NotationException("Connection refers to unknown polymer " + polymerID);
+        }
+        return offset + Integer.parseInt(unit) - 1;
+    }
 }
@@ -0,0 +1,270 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * MonomerDictionary class interns every distinct monomer of all molecule graphs of the process
+ * to an int id, together with its polymer type and flags. It also interns the units of the
+ * paths: the unit of a monomer in original paths and the unit of its natural analog get a unit
+ * id and a 64 bit token, so graphs, path enumeration and path keys only work on ids. The string
+ * work for a monomer (lower case for RNA, brackets, natural analog lookup) is done once.
+ * The dictionary only grows, it is meant for the few thousand distinct monomers of a library.
+ * Lookups of known monomers and units are lock-free.
+ */
+public final class MonomerDictionary {
+    private static final Vertex.Type[] TYPES = Vertex.Type.values();
+    private static final long TOKEN_MULTIPLIER = 0x9E3779B97F4A7C15L;
+    private static final int NON_NATURAL = 1;
+    private static final int UNIQUE_UNIT = 2;
+    private static final MonomerDictionary INSTANCE = new MonomerDictionary();
+
+    // Monomer ids by unit, one map for every combination of polymer type and flags.
+    private final List<ConcurrentHashMap<String, Integer>> monomerIndex = new ArrayList<>();
+    private final ConcurrentHashMap<String, Integer> unitIndex = new ConcurrentHashMap<>();
+
+    // The arrays are only written under the lock of the dictionary and replaced by larger copies.
+    private volatile String[] monomerUnits = new String[64];
+    private volatile byte[] types = new byte[64];
+    private volatile byte[] flags = new byte[64];
+    private volatile int[] monomerUnitIds = new int[64];
+    private volatile String[] units = new String[64];
+    private volatile long[] tokens = new long[64];
+    private int monomerCount;
+    private int unitCount;
+    private volatile NaturalUnits naturalUnits;
+
+    private MonomerDictionary() {
+        for (int i = 0; i < (TYPES.length + 1) * 4; i++) {
+            monomerIndex.add(new ConcurrentHashMap<>());
+        }
+    }
+
+    public static MonomerDictionary getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Gets the id of a monomer and interns it if it is not known yet.
+     *
+     * @param unit the monomer unit, as in the HELM notation
+     * @param type the polymer type of the monomer
+     * @param nonNatural true if the monomer is not a natural monomer
+     * @param uniqueUnit true if the unit of the monomer is unique
+     * @return the monomer id
+     */
+    public int getMonomerId(String unit, Vertex.Type type, boolean nonNatural, boolean uniqueUnit) {
+        int typeIndex = type == null ? TYPES.length : type.ordinal();
+        int monomerFlags = (nonNatural ? NON_NATURAL : 0) | (uniqueUnit ? UNIQUE_UNIT : 0);
+        ConcurrentHashMap<String, Integer> index = monomerIndex.get(4 * typeIndex + monomerFlags);
+        Integer id = index.get(unit);
+        if (id == null) {
+            id = addMonomer(index, unit, type, monomerFlags);
+        }
+        return id;
+    }
+
+    private synchronized int addMonomer(ConcurrentHashMap<String, Integer> index, String unit, Vertex.Type type,
+                                        int monomerFlags) {
+        Integer id = index.get(unit);
+        if (id != null) {
+            return id;
+        }
+        int monomerId = monomerCount;
+        if (monomerId == monomerUnits.length) {
+            monomerUnits = Arrays.copyOf(monomerUnits, 2 * monomerId);
+            types = Arrays.copyOf(types, 2 * monomerId);
+            flags = Arrays.copyOf(flags, 2 * monomerId);
+            monomerUnitIds = Arrays.copyOf(monomerUnitIds, 2 * monomerId);
+        }
+        monomerUnits[monomerId] = unit;
+        types[monomerId] = type == null ? -1 : (byte) type.ordinal();
+        flags[monomerId] = (byte) monomerFlags;
+        // Natural RNA monomers are written in lower case in paths.
+        monomerUnitIds[monomerId] = getUnitId((monomerFlags & UNIQUE_UNIT) != 0 ? unit.toLowerCase() : unit);
+        monomerCount++;
+        // Publishing the id makes the array entries visible to the threads that find it.
+        index.put(unit, monomerId);
+        return monomerId;
+    }
+
+    /**
+     * @param monomerId the id of a monomer
+     * @return the monomer unit, as in the HELM notation
+     */
+    public String getMonomerUnit(int monomerId) {
+        return monomerUnits[monomerId];
+    }
+
+    public Vertex.Type getType(int monomerId) {
+        byte type = types[monomerId];
+        return type < 0 ? null : TYPES[type];
+    }
+
+    public boolean isNonNatural(int monomerId) {
+        return (flags[monomerId] & NON_NATURAL) != 0;
+    }
+
+    public boolean hasUniqueUnit(int monomerId) {
+        return (flags[monomerId] & UNIQUE_UNIT) != 0;
+    }
+
+    /**
+     * @param monomerId the id of a monomer
+     * @return the unit id of the monomer in original paths
+     */
+    public int getUnitId(int monomerId) {
+        return monomerUnitIds[monomerId];
+    }
+
+    /**
+     * Gets the unit id of a monomer in natural paths. The result is cached for the given index,
+     * a new index (after the monomer store has changed) starts a new cache.
+     *
+     * @param monomerId the id of a monomer
+     * @param naturalAnalogs the natural analogs of the monomer store
+     * @return the unit id of the natural analog of the monomer
+     */
+    public int getNaturalUnitId(int monomerId, NaturalAnalogIndex naturalAnalogs) {
+        NaturalUnits natural = naturalUnits;
+        if (natural != null && natural.index == naturalAnalogs) {
+            int[] ids = natural.unitIds;
+            // Ids are stored plus one, 0 marks a monomer whose analog is not looked up yet.
+            if (monomerId < ids.length && ids[monomerId] != 0) {
+                return ids[monomerId] - 1;
+            }
+        }
+        return addNaturalUnitId(monomerId, naturalAnalogs);
+    }
+
+    private synchronized int addNaturalUnitId(int monomerId, NaturalAnalogIndex naturalAnalogs) {
+        NaturalUnits natural = naturalUnits;
+        if (natural == null || natural.index != naturalAnalogs) {
+            natural = new NaturalUnits(naturalAnalogs, monomerUnits.length);
+            naturalUnits = natural;
+        }
+        int unitId = getUnitId(getNaturalUnit(monomerId, naturalAnalogs));
+        // The ids are read without the lock, a new id is published with a new copy of the array,
+        // so a reader that sees the id also sees the unit and token that it refers to.
+        int[] ids = Arrays.copyOf(natural.unitIds, Math.max(natural.unitIds.length, monomerUnits.length));
+        ids[monomerId] = unitId + 1;
+        natural.unitIds = ids;
+        return unitId;
+    }
+
+    /**
+     * Gets the unit of a monomer in natural paths. A peptide analog that is missing in the
+     * monomer store is kept as "null", like in earlier versions.
+     */
+    private String getNaturalUnit(int monomerId, NaturalAnalogIndex naturalAnalogs) {
+        String monomerUnit = monomerUnits[monomerId];
+        Vertex.Type type = getType(monomerId);
+        if (isNonNatural(monomerId)) {
+            // Remove squared brackets to be able to compare non-natural analog with monomer store.
+            String strippedUnit = monomerUnit.substring(1, monomerUnit.length() - 1);
+            if (type == Vertex.Type.PEPTIDE) {
+                return String.valueOf(naturalAnalogs.getNaturalPeptide(strippedUnit));
+            } else if (type == Vertex.Type.RNA) {
+                return String.valueOf(naturalAnalogs.getNaturalRNA(strippedUnit));
+            } else if (type == Vertex.Type.CHEM) {
+                // No need for natural analog of CHEM.
+                return monomerUnit;
+            }
+            return "";
+        }
+        return getUnit(getUnitId(monomerId));
+    }
+
+    /**
+     * Gets the id of a path unit and interns it if it is not known yet.
+     *
+     * @param unit the unit as it appears in paths
+     * @return the unit id
+     */
+    public int getUnitId(String unit) {
+        Integer id = unitIndex.get(unit);
+        if (id == null) {
+            id = addUnit(unit);
+        }
+        return id;
+    }
+
+    /**
+     * Gets the id of a path unit without interning it.
+     *
+     * @param unit the unit as it appears in paths
+     * @return the unit id, or -1 if the unit is not known
+     */
+    public int findUnitId(String unit) {
+        Integer id = unitIndex.get(unit);
+        return id == null ? -1 : id;
+    }
+
+    private synchronized int addUnit(String unit) {
+        Integer id = unitIndex.get(unit);
+        if (id != null) {
+            return id;
+        }
+        int unitId = unitCount;
+        if (unitId == units.length) {
+            units = Arrays.copyOf(units, 2 * unitId);
+            tokens = Arrays.copyOf(tokens, 2 * unitId);
+        }
+        units[unitId] = unit;
+        // Finalizer of SplitMix64, the token is never 0.
+        long z = (unitId + 1) * TOKEN_MULTIPLIER;
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        tokens[unitId] = (z ^ (z >>> 31)) | 1;
+        unitCount++;
+        unitIndex.put(unit, unitId);
+        return unitId;
+    }
+
+    /**
+     * @param unitId the id of a path unit
+     * @return the unit as it appears in paths
+     */
+    public String getUnit(int unitId) {
+        return units[unitId];
+    }
+
+    /**
+     * @param unitId the id of a path unit
+     * @return the token of the unit, a well mixed 64 bit number that is never 0
+     */
+    public long getToken(int unitId) {
+        return tokens[unitId];
+    }
+
+    /**
+     * NaturalUnits class holds the natural unit ids of the monomers for one natural analog index.
+     */
+    private static final class NaturalUnits {
+        private final NaturalAnalogIndex index;
+        private volatile int[] unitIds;
+
+        NaturalUnits(NaturalAnalogIndex index, int capacity) {
+            this.index = index;
+            this.unitIds = new int[capacity];
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.helm.notation2.Monomer;
+import org.helm.notation2.MonomerFactory;
+import org.helm.notation2.MonomerStore;
+import org.helm.notation2.exception.ChemistryException;
+import org.helm.notation2.exception.MonomerLoadingException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * NaturalAnalogIndex class maps the monomer IDs of the monomer store to their natural
+ * analogs. The IDs are compared case insensitively, like in the monomer store. The index
+ * is built once and shared, {@link #getInstance()} builds a new one when monomers were
+ * added to or removed from the store or the store was replaced. Monomers without a
+ * natural analog are remembered, so that a warning is logged only once for each of them.
+ */
+public final class NaturalAnalogIndex {
+    private static final Logger LOG = LoggerFactory.getLogger(NaturalAnalogIndex.class);
+
+    /**
+     * Index without monomers, every lookup is a miss.
+     */
+    public static final NaturalAnalogIndex EMPTY = new NaturalAnalogIndex(Collections.emptyMap());
+
+    private static volatile NaturalAnalogIndex instance;
+
+    private final Map<String, Map<String, Monomer>> monomerDB;
+    private final int monomerCount;
+    private final Map<String, String> peptideAnalogs = new HashMap<>();
+    private final Map<String, String> rnaAnalogs = new HashMap<>();
+    private final Set<String> misses = ConcurrentHashMap.newKeySet();
+    private final long version;
+
+    private NaturalAnalogIndex(Map<String, Map<String, Monomer>> monomerDB) {
+        this.monomerDB = monomerDB;
+        this.monomerCount = countMonomers(monomerDB);
+        for (Map.Entry<String, Map<String, Monomer>> polymerType : monomerDB.entrySet()) {
+            if (polymerType.getKey().equalsIgnoreCase("Peptide")) {
+                addMonomers(polymerType.getValue(), peptideAnalogs, false);
+            } else if (polymerType.getKey().equalsIgnoreCase("RNA")) {
+                addMonomers(polymerType.getValue(), rnaAnalogs, true);
+            }
+        }
+        this.version = 31 * getVersion("PEPTIDE", peptideAnalogs) + getVersion("RNA", rnaAnalogs);
+    }
+
+    /**
+     * Returns the index of the monomer store of the MonomerFactory and builds it again if the store has changed.
+     *
+     * @return the natural analog index
+     * @throws MonomerLoadingException if the monomer store cannot be loaded
+     * @throws ChemistryException if the monomer store cannot be loaded
+     */
+    public static NaturalAnalogIndex getInstance() throws MonomerLoadingException, ChemistryException {
+        MonomerStore store = MonomerFactory.getInstance().getMonomerStore();
+        Map<String, Map<String, Monomer>> monomerDB = store.getMonomerDB();
+        NaturalAnalogIndex index = instance;
+        if (index == null || !index.isBuiltFrom(monomerDB)) {
+            synchronized (NaturalAnalogIndex.class) {
+                index = instance;
+                if (index == null || !index.isBuiltFrom(monomerDB)) {
+                    LOG.debug("Building natural analog index.");
+                    index = new NaturalAnalogIndex(monomerDB);
+                    instance = index;
+                }
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Discards the shared index, the next call of {@link #getInstance()} builds a new one. This is only
+     * needed if monomers of the store were changed without changing the number of monomers.
+     */
+    public static void invalidate() {
+        instance = null;
+    }
+
+    /**
+     * Gets the version of the index, a 64 bit hash of all monomer IDs and their natural analogs.
+     * Stores with the same monomers and analogs have the same version, in any order.
+     *
+     * @return version of the index
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    private static long getVersion(String polymerType, Map<String, String> analogs) {
+        long version = 0;
+        for (Map.Entry<String, String> analog : analogs.entrySet()) {
+            byte[] entry = (polymerType + ":" + analog.getKey() + "=" + analog.getValue())
+                    .getBytes(StandardCharsets.UTF_8);
+            version += PathHasher.xxHash64(entry, 0, entry.length, 0);
+        }
+        return version;
+    }
+
+    /**
+     * Gets the units of all monomers of the store as they appear in paths: IDs with more than one
+     * character in square brackets and natural RNA monomers in lower case.
+     *
+     * @return units of the monomers of the store
+     */
+    public List<String> getMonomerUnits() {
+        List<String> units = new ArrayList<>(monomerCount);
+        for (Map.Entry<String, Map<String, Monomer>> polymerType : monomerDB.entrySet()) {
+            boolean rna = polymerType.getKey().equalsIgnoreCase("RNA");
+            for (Monomer monomer : polymerType.getValue().values()) {
+                String id = monomer.getAlternateId();
+                if (id == null || id.isEmpty()) {
+                    continue;
+                }
+                if (id.length() > 1) {
+                    units.add("[" + id + "]");
+                } else {
+                    units.add(rna ? id.toLowerCase() : id);
+                }
+            }
+        }
+        return units;
+    }
+
+    /**
+     * Gets the natural analog of a peptide monomer.
+     *
+     * @param monomerUnit the monomer ID without brackets
+     * @return natural analog of the monomer, or the monomer in brackets if there is none
+     */
+    public String getNaturalPeptide(String monomerUnit) {
+        return lookup(peptideAnalogs, "PEPTIDE", monomerUnit);
+    }
+
+    /**
+     * Gets the natural analog of a RNA monomer in lower case.
+     *
+     * @param monomerUnit the monomer ID without brackets
+     * @return natural analog of the monomer, or the monomer in brackets if there is none
+     */
+    public String getNaturalRNA(String monomerUnit) {
+        return lookup(rnaAnalogs, "RNA", monomerUnit);
+    }
+
+    private String lookup(Map<String, String> analogs, String polymerType, String monomerUnit) {
+        String key = monomerUnit.toLowerCase(Locale.ROOT);
+        String analog = analogs.get(key);
+        if (analog != null || analogs.containsKey(key)) {
+            return analog;
+        }
+        if (misses.add(polymerType + ":" + key)) {
+            LOG.warn("Could not find natural analog to {} monomer {}", polymerType, monomerUnit);
+        }
+        return "[" + monomerUnit + "]";
+    }
+
+    private boolean isBuiltFrom(Map<String, Map<String, Monomer>> monomerDB) {
+        return this.monomerDB == monomerDB && monomerCount == countMonomers(monomerDB);
+    }
+
+    private static int countMonomers(Map<String, Map<String, Monomer>> monomerDB) {
+        int count = 0;
+        for (Map<String, Monomer> monomers : monomerDB.values()) {
+            count += monomers.size();
+        }
+        return count;
+    }
+
+    private static void addMonomers(Map<String, Monomer> monomers, Map<String, String> analogs, boolean lowerCase) {
+        for (Monomer monomer : monomers.values()) {
+            if (monomer.getAlternateId() == null) {
+                continue;
+            }
+            String naturalAnalog = monomer.getNaturalAnalog();
+            if (lowerCase) {
+                if (naturalAnalog == null) {
+                    continue;
+                }
+                naturalAnalog = naturalAnalog.toLowerCase();
+            }
+            // The first monomer with an ID wins, like in a scan of the store.
+            String key = monomer.getAlternateId().toLowerCase(Locale.ROOT);
+            if (!analogs.containsKey(key)) {
+                analogs.put(key, naturalAnalog);
+            }
+        }
+    }
+}
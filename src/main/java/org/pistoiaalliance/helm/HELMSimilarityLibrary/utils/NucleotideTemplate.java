@@ -0,0 +1,205 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.helm.notation2.parser.exceptionparser.NotationException;
+import org.helm.notation2.parser.notation.polymer.MonomerNotation;
+import org.helm.notation2.parser.notation.polymer.MonomerNotationUnitRNA;
+
+/**
+ * NucleotideTemplate class holds an RNA unit like "R(A)P" decomposed into its sugar, base and
+ * phosphate monomers together with the bonds between them. Templates are cached by their unit,
+ * so a unit is only parsed the first time it is seen and molecule graphs copy the cached monomers
+ * and bonds. When the cache is full, the least recently used unit is removed. Templates are
+ * immutable and shared between threads, the monomer notations of a template are shared by all
+ * vertices that are built from it.
+ */
+public final class NucleotideTemplate {
+    /**
+     * Maximal number of cached units, further units replace the least recently used ones.
+     */
+    public static final int MAX_CACHE_SIZE = 4096;
+
+    static final byte SUGAR = 0;
+    static final byte BASE = 1;
+    static final byte PHOSPHATE = 2;
+    static final byte OTHER = 3;
+
+    private static final LinkedHashMap<String, NucleotideTemplate> CACHE =
+            new LinkedHashMap<String, NucleotideTemplate>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<String, NucleotideTemplate> eldest) {
+                    return size() > MAX_CACHE_SIZE;
+                }
+            };
+
+    private final List<MonomerNotation> monomers;
+    private final int[] monomerIds;
+    private final byte[] kinds;
+    private final int[] edges;
+
+    private NucleotideTemplate(String unit) throws NotationException {
+        MonomerNotationUnitRNA rnaUnit = new MonomerNotationUnitRNA(unit, "RNA");
+        MonomerDictionary dictionary = MonomerDictionary.getInstance();
+        int size = rnaUnit.getContents().size();
+        List<MonomerNotation> contents = new ArrayList<>(size);
+        monomerIds = new int[size];
+        kinds = new byte[size];
+        for (int m = 0; m < size; m++) {
+            MonomerNotation monomer = rnaUnit.getContents().get(m);
+            String monomerUnit = monomer.getUnit();
+            contents.add(monomer);
+            monomerIds[m] = dictionary.getMonomerId(monomerUnit, Vertex.Type.RNA, monomerUnit.length() > 1,
+                    monomerUnit.length() <= 1);
+            kinds[m] = getKind(rnaUnit.getInformation().get(m));
+        }
+        monomers = Collections.unmodifiableList(contents);
+        int[] bonds = new int[4 * size];
+        int count = 0;
+        for (int i = 0; i < size; i++) {
+            count = addEdges(kinds, size, i, 0, bonds, count);
+        }
+        edges = Arrays.copyOf(bonds, count);
+    }
+
+    /**
+     * Gets the template of an RNA unit from the cache, or decomposes the unit if it is not cached yet.
+     *
+     * @param unit the RNA unit, as in the HELM notation
+     * @return the template of the unit
+     * @throws NotationException if the unit cannot be decomposed
+     */
+    public static NucleotideTemplate get(String unit) throws NotationException {
+        synchronized (CACHE) {
+            NucleotideTemplate template = CACHE.get(unit);
+            if (template != null) {
+                return template;
+            }
+        }
+        // Decompose outside of the lock, so that other threads are not blocked by the parser.
+        NucleotideTemplate template = new NucleotideTemplate(unit);
+        synchronized (CACHE) {
+            NucleotideTemplate cached = CACHE.putIfAbsent(unit, template);
+            return cached != null ? cached : template;
+        }
+    }
+
+    /**
+     * @return the number of monomers of the unit
+     */
+    public int size() {
+        return monomerIds.length;
+    }
+
+    /**
+     * @return the monomer notations of the unit, in the order of the HELM notation
+     */
+    public List<MonomerNotation> getMonomers() {
+        return monomers;
+    }
+
+    /**
+     * @param index the position of the monomer in the unit
+     * @return the id of the monomer in the {@link MonomerDictionary}
+     */
+    public int getMonomerId(int index) {
+        return monomerIds[index];
+    }
+
+    /**
+     * @return the number of bonds within the unit
+     */
+    public int getEdgeCount() {
+        return edges.length / 2;
+    }
+
+    /**
+     * @param edge the number of the bond
+     * @return the position of the first monomer of the bond in the unit
+     */
+    public int getEdgeSource(int edge) {
+        return edges[2 * edge];
+    }
+
+    /**
+     * @param edge the number of the bond
+     * @return the position of the second monomer of the bond in the unit
+     */
+    public int getEdgeTarget(int edge) {
+        return edges[2 * edge + 1];
+    }
+
+    byte getKind(int index) {
+        return kinds[index];
+    }
+
+    private static byte getKind(String information) {
+        if (information.equalsIgnoreCase("R")) {
+            return SUGAR;
+        } else if (information.equalsIgnoreCase("X")) {
+            return BASE;
+        } else if (information.equalsIgnoreCase("P")) {
+            return PHOSPHATE;
+        }
+        return OTHER;
+    }
+
+    /**
+     * Adds the bonds from one monomer of an RNA polymer to the following ones: ribose to phosphate,
+     * ribose to base (and to the phosphate after the base) and phosphate to the next ribose.
+     *
+     * @param kinds the kind of every monomer of the polymer
+     * @param length the number of monomers of the polymer
+     * @param source the position of the monomer the bonds start at
+     * @param minTarget the first position a bond may end at, smaller targets are skipped
+     * @param edges receives the positions of both monomers of each bond
+     * @param count the number of positions in edges
+     * @return the new number of positions in edges
+     */
+    static int addEdges(byte[] kinds, int length, int source, int minTarget, int[] edges, int count) {
+        if (source >= length - 1) {
+            return count;
+        }
+        byte next = kinds[source + 1];
+        if (kinds[source] == SUGAR) {
+            if (next == PHOSPHATE || next == BASE) {
+                count = addEdge(source, source + 1, minTarget, edges, count);
+            }
+            if (next == BASE && source + 2 < length && kinds[source + 2] == PHOSPHATE) {
+                count = addEdge(source, source + 2, minTarget, edges, count);
+            }
+        } else if (kinds[source] == PHOSPHATE && next == SUGAR) {
+            count = addEdge(source, source + 1, minTarget, edges, count);
+        }
+        return count;
+    }
+
+    private static int addEdge(int source, int target, int minTarget, int[] edges, int count) {
+        if (target >= minTarget) {
+            edges[count++] = source;
+            edges[count++] = target;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,335 @@
+/*******************************************************************************
+ * Copyright C 2016, QUATTRO RESEARCH GMBH
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy of this software and associated
+ * documentation files (the "Software"), to deal in the Software without restriction, including without limitation the
+ * rights to use, copy, modify, merge, publish, distribute, sublicense, and/or sell copies of the Software, and to
+ * permit persons to whom the Software is furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all copies or substantial portions of the
+ * Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR IMPLIED, INCLUDING BUT NOT LIMITED TO THE
+ * WARRANTIES OF MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE AUTHORS OR
+ * COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR
+ * OTHERWISE, ARISING FROM, OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE SOFTWARE.
+ ******************************************************************************/
+package org.pistoiaalliance.helm.HELMSimilarityLibrary.utils;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.HashFunction;
+
+/**
+ * PathHasher class maps a monomer path to a bit position of a fingerprint with a size of
+ * 2^bits. The position for a smaller fingerprint always equals the position for a larger
+ * one modulo the smaller size, so folding a fingerprint gives the same result as hashing
+ * the paths again. All scratch buffers are kept in the instance, so hashing a path does
+ * not allocate any objects. An instance is not thread-safe and should be used by one
+ * thread only.
+ */
+public final class PathHasher {
+    private static final int DIGEST_LENGTH = 32;
+    private static final int LEGACY_BITS = 10;
+
+    private static final long XX_PRIME1 = 0x9E3779B185EBCA87L;
+    private static final long XX_PRIME2 = 0xC2B2AE3D27D4EB4FL;
+    private static final long XX_PRIME3 = 0x165667B19E3779F9L;
+    private static final long XX_PRIME4 = 0x85EBCA77C2B2AE63L;
+    private static final long XX_PRIME5 = 0x27D4EB2F165667C5L;
+
+    private static final long MURMUR_C1 = 0x87C37B91114253D5L;
+    private static final long MURMUR_C2 = 0x4CF5AD432745937FL;
+
+    private MessageDigest sha256;
+    private final byte[] digest = new byte[DIGEST_LENGTH];
+    private byte[] buffer = new byte[256];
+
+    /**
+     * Maps a path to its bit position in a fingerprint of size 2^bits.
+     *
+     * @param path the monomer path
+     * @param function the hash function to be applied on the UTF-8 bytes of the path
+     * @param bits the number of bits of the position
+     * @return int bit position
+     * @throws NoSuchAlgorithmException if SHA-256 is not available
+     */
+    public int getBitPosition(CharSequence path, HashFunction function, int bits) throws NoSuchAlgorithmException {
+        int length = encode(path);
+        switch (function) {
+            case MURMUR3:
+                return (int) murmur3(buffer, 0, length, 0) & ((1 << bits) - 1);
+            case XXHASH64:
+                return (int) xxHash64(buffer, 0, length, 0) & ((1 << bits) - 1);
+            case LEGACY_SHA256:
+            default:
+                return getLegacyBitPosition(length, bits);
+        }
+    }
+
+    /**
+     * Reproduces the bit position of earlier versions: the SHA-256 digest is read as a
+     * little-endian bit set, halved with xor down to 16 bits, the upper 6 bits are folded
+     * onto the lower 10 bits and these are read in reversed order. Smaller fingerprints
+     * use the lower bits of this position, larger ones take the additional upper bits from
+     * the 64 bit fold of the digest.
+     */
+    private int getLegacyBitPosition(int length, int bits) throws NoSuchAlgorithmException {
+        if (sha256 == null) {
+            sha256 = MessageDigest.getInstance("SHA-256");
+        }
+        sha256.update(buffer, 0, length);
+        try {
+            sha256.digest(digest, 0, DIGEST_LENGTH);
+        } catch (DigestException e) {
+            throw new IllegalStateException(e);
+        }
+
+        long w0 = getLong(digest, 0);
+        long w1 = getLong(digest, 8);
+        long w2 = getLong(digest, 16);
+        long w3 = getLong(digest, 24);
+
+        // BitSet.valueOf drops trailing zero bytes, so the first split of the
+        // old folding depended on the number of remaining words.
+        int usedBytes = DIGEST_LENGTH;
+        while (usedBytes > 0 && digest[usedBytes - 1] == 0) {
+            usedBytes--;
+        }
+        long folded;
+        switch ((usedBytes + 7) / 8) {
+            case 4:
+                folded = w0 ^ w1 ^ w2 ^ w3;
+                break;
+            case 3:
+                folded = (w0 ^ (w1 >>> 32 | w2 << 32)) ^ ((w1 & 0xFFFFFFFFL) ^ (w2 >>> 32));
+                break;
+            case 2:
+                folded = w0 ^ w1;
+                break;
+            case 1:
+                folded = (w0 ^ (w0 >>> 32)) & 0xFFFFFFFFL;
+                break;
+            default:
+                folded = 0;
+        }
+
+        int upperBits = (int) (folded >>> 48);
+        folded = (folded ^ (folded >>> 32)) & 0xFFFFFFFFL;
+        folded = (folded ^ (folded >>> 16)) & 0xFFFFL;
+        int position = (int) (folded ^ (folded >>> LEGACY_BITS)) & ((1 << LEGACY_BITS) - 1);
+        position = Integer.reverse(position) >>> (Integer.SIZE - LEGACY_BITS);
+
+        if (bits <= LEGACY_BITS) {
+            return position & ((1 << bits) - 1);
+        }
+        return (upperBits & ((1 << (bits - LEGACY_BITS)) - 1)) << LEGACY_BITS | position;
+    }
+
+    /**
+     * Encodes the path as UTF-8 into the internal buffer.
+     *
+     * @return number of bytes written
+     */
+    private int encode(CharSequence path) {
+        int maxLength = path.length() * 3;
+        if (buffer.length < maxLength) {
+            buffer = new byte[Math.max(maxLength, buffer.length * 2)];
+        }
+        int pos = 0;
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c < 0x80) {
+                buffer[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                buffer[pos++] = (byte) (0xC0 | (c >> 6));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < path.length()
+                    && Character.isLowSurrogate(path.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, path.charAt(++i));
+                buffer[pos++] = (byte) (0xF0 | (codePoint >> 18));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (codePoint & 0x3F));
+            } else if (Character.isSurrogate(c)) {
+                // Unpaired surrogates are replaced like String.getBytes does.
+                buffer[pos++] = (byte) '?';
+            } else {
+                buffer[pos++] = (byte) (0xE0 | (c >> 12));
+                buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+        return pos;
+    }
+
+    /**
+     * Computes the 64-bit xxHash of a byte range.
+     *
+     * @param data the input bytes
+     * @param offset the start of the range
+     * @param length the length of the range
+     * @param seed the seed
+     * @return long hash value
+     */
+    public static long xxHash64(byte[] data, int offset, int length, long seed) {
+        int pos = offset;
+        int end = offset + length;
+        long hash;
+
+        if (length >= 32) {
+            long v1 = seed + XX_PRIME1 + XX_PRIME2;
+            long v2 = seed + XX_PRIME2;
+            long v3 = seed;
+            long v4 = seed - XX_PRIME1;
+            do {
+                v1 = xxRound(v1, getLong(data, pos));
+                v2 = xxRound(v2, getLong(data, pos + 8));
+                v3 = xxRound(v3, getLong(data, pos + 16));
+                v4 = xxRound(v4, getLong(data, pos + 24));
+                pos += 32;
+            } while (pos <= end - 32);
+            hash = Long.rotateLeft(v1, 1) + Long.rotateLeft(v2, 7) + Long.rotateLeft(v3, 12)
+                    + Long.rotateLeft(v4, 18);
+            hash = xxMergeRound(hash, v1);
+            hash = xxMergeRound(hash, v2);
+            hash = xxMergeRound(hash, v3);
+            hash = xxMergeRound(hash, v4);
+        } else {
+            hash = seed + XX_PRIME5;
+        }
+
+        hash += length;
+        while (pos <= end - 8) {
+            hash ^= xxRound(0, getLong(data, pos));
+            hash = Long.rotateLeft(hash, 27) * XX_PRIME1 + XX_PRIME4;
+            pos += 8;
+        }
+        if (pos <= end - 4) {
+            hash ^= (getInt(data, pos) & 0xFFFFFFFFL) * XX_PRIME1;
+            hash = Long.rotateLeft(hash, 23) * XX_PRIME2 + XX_PRIME3;
+            pos += 4;
+        }
+        while (pos < end) {
+            hash ^= (data[pos] & 0xFFL) * XX_PRIME5;
+            hash = Long.rotateLeft(hash, 11) * XX_PRIME1;
+            pos++;
+        }
+
+        hash ^= hash >>> 33;
+        hash *= XX_PRIME2;
+        hash ^= hash >>> 29;
+        hash *= XX_PRIME3;
+        hash ^= hash >>> 32;
+        return hash;
+    }
+
+    /**
+     * Computes the lower 64 bits of the 128-bit x64 MurmurHash3 of a byte range.
+     *
+     * @param data the input bytes
+     * @param offset the start of the range
+     * @param length the length of the range
+     * @param seed the seed
+     * @return long hash value
+     */
+    public static long murmur3(byte[] data, int offset, int length, long seed) {
+        long h1 = seed;
+        long h2 = seed;
+        int pos = offset;
+        int end = offset + length;
+
+        while (pos <= end - 16) {
+            long k1 = getLong(data, pos);
+            long k2 = getLong(data, pos + 8);
+            pos += 16;
+
+            k1 *= MURMUR_C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= MURMUR_C2;
+            h1 ^= k1;
+            h1 = Long.rotateLeft(h1, 27);
+            h1 += h2;
+            h1 = h1 * 5 + 0x52DCE729;
+
+            k2 *= MURMUR_C2;
+            k2 = Long.rotateLeft(k2, 33);
+            k2 *= MURMUR_C1;
+            h2 ^= k2;
+            h2 = Long.rotateLeft(h2, 31);
+            h2 += h1;
+            h2 = h2 * 5 + 0x38495AB5;
+        }
+
+        int remaining = end - pos;
+        if (remaining > 0) {
+            long k1 = 0;
+            long k2 = 0;
+            for (int i = remaining - 1; i >= 8; i--) {
+                k2 = (k2 << 8) | (data[pos + i] & 0xFFL);
+            }
+            for (int i = Math.min(remaining, 8) - 1; i >= 0; i--) {
+                k1 = (k1 << 8) | (data[pos + i] & 0xFFL);
+            }
+            if (remaining > 8) {
+                k2 *= MURMUR_C2;
+                k2 = Long.rotateLeft(k2, 33);
+                k2 *= MURMUR_C1;
+                h2 ^= k2;
+            }
+            k1 *= MURMUR_C1;
+            k1 = Long.rotateLeft(k1, 31);
+            k1 *= MURMUR_C2;
+            h1 ^= k1;
+        }
+
+        h1 ^= length;
+        h2 ^= length;
+        h1 += h2;
+        h2 += h1;
+        h1 = fmix64(h1);
+        h2 = fmix64(h2);
+        h1 += h2;
+        return h1;
+    }
+
+    private static long xxRound(long acc, long input) {
+        acc += input * XX_PRIME2;
+        acc = Long.rotateLeft(acc, 31);
+        return acc * XX_PRIME1;
+    }
+
+    private static long xxMergeRound(long acc, long value) {
+        acc ^= xxRound(0, value);
+        return acc * XX_PRIME1 + XX_PRIME4;
+    }
+
+    private static long fmix64(long k) {
+        k ^= k >>> 33;
+        k *= 0xFF51AFD7ED558CCDL;
+        k ^= k >>> 33;
+        k *= 0xC4CEB9FE1A85EC53L;
+        k ^= k >>> 33;
+        return k;
+    }
+
+    private static long getLong(byte[] data, int pos) {
+        return (data[pos] & 0xFFL)
+                | (data[pos + 1] & 0xFFL) << 8
+                | (data[pos + 2] & 0xFFL) << 16
+                | (data[pos + 3] & 0xFFL) << 24
+                | (data[pos + 4] & 0xFFL) << 32
+                | (data[pos + 5] & 0xFFL) << 40
+                | (data[pos + 6] & 0xFFL) << 48
+                | (data[pos + 7] & 0xFFL) << 56;
+    }
+
+    private static int getInt(byte[] data, int pos) {
+        return (data[pos] & 0xFF)
+                | (data[pos + 1] & 0xFF) << 8
+                | (data[pos + 2] & 0xFF) << 16
+                | (data[pos + 3] & 0xFF) << 24;
+    }
+}
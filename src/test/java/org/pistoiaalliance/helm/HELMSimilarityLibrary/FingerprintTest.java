@@ -1,5 +1,20 @@
 package org.pistoiaalliance.helm.HELMSimilarityLibrary;
 
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
 import org.helm.notation2.parser.ConverterHELM1ToHELM2;
 import org.helm.notation2.parser.ParserHELM2;
 import org.helm.notation2.parser.exceptionparser.ExceptionState;
@@ -7,6 +22,11 @@ import org.helm.notation2.parser.notation.HELM2Notation;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraph;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraphUtils;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MonomerDictionary;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NaturalAnalogIndex;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.PathHasher;
 
 
 public class FingerprintTest {
@@ -56,4 +76,456 @@ public class FingerprintTest {
 		Assert.assertEquals(1, Similarity.calculateSimilarity(parentNotation, parentNotation), 0);
 	}
 
+	@Test
+	public void testFoldFingerprint() throws Exception {
+		for (HashFunction hashFunction : HashFunction.values()) {
+			FingerprintConfig largeConfig = new FingerprintConfig(4096, hashFunction);
+			BitSet large = Fingerprinter.calculateFingerprintNaturalAnalogs(childNotation, largeConfig);
+			for (int size = 64; size <= 4096; size *= 2) {
+				BitSet direct = Fingerprinter.calculateFingerprintNaturalAnalogs(childNotation, largeConfig.withSize(size));
+				Assert.assertEquals(direct, Fingerprinter.foldFingerprint(large, 4096, size));
+			}
+		}
+	}
+
+	@Test
+	public void testDefaultConfig() throws Exception {
+		Assert.assertEquals(Fingerprinter.calculateFingerprint(childNotation),
+				Fingerprinter.calculateFingerprint(childNotation, new FingerprintConfig(1024, HashFunction.LEGACY_SHA256)));
+	}
+
+	@Test
+	public void testHelmFingerprint() throws Exception {
+		BitSet parent = Fingerprinter.calculateFingerprint(parentNotation);
+		BitSet child = Fingerprinter.calculateFingerprint(childNotation);
+		HelmFingerprint helmParent = HelmFingerprint.fromBitSet(parent);
+		HelmFingerprint helmChild = Fingerprinter.calculateHelmFingerprint(childNotation);
+
+		Assert.assertEquals(parent, helmParent.toBitSet());
+		Assert.assertEquals(parent.toString(), helmParent.toString());
+		Assert.assertEquals(parent.cardinality(), helmParent.getCardinality());
+		Assert.assertEquals(HelmFingerprint.fromBitSet(child), helmChild);
+		Assert.assertEquals(Similarity.calculateSimilarity(parent, child),
+				Similarity.calculateSimilarity(helmParent, helmChild), 0);
+		Assert.assertTrue(Subset.checkHelmRelationship(helmParent, helmChild));
+		Assert.assertFalse(Subset.checkHelmRelationship(helmChild, helmParent));
+	}
+
+	@Test
+	public void testBulkKernels() throws Exception {
+		BitSet parent = Fingerprinter.calculateFingerprint(parentNotation);
+		BitSet child = Fingerprinter.calculateFingerprint(childNotation);
+		List<HelmFingerprint> fingerprints = Arrays.asList(HelmFingerprint.fromBitSet(child),
+				HelmFingerprint.fromBitSet(parent), HelmFingerprint.fromBitSet(new BitSet()));
+		double[] similarities = new double[fingerprints.size()];
+		boolean[] subsets = new boolean[fingerprints.size()];
+
+		Similarity.calculateSimilarities(HelmFingerprint.fromBitSet(parent), fingerprints, similarities);
+		Subset.checkHelmRelationships(HelmFingerprint.fromBitSet(parent), fingerprints, subsets);
+
+		Assert.assertEquals(Similarity.calculateSimilarity(parent, child), similarities[0], 0);
+		Assert.assertEquals(1.0, similarities[1], 0);
+		Assert.assertEquals(0.0, similarities[2], 0);
+		Assert.assertArrayEquals(new boolean[]{true, true, false}, subsets);
+		Assert.assertTrue(Subset.checkHelmRelationship(parent, child));
+		Assert.assertFalse(Subset.checkHelmRelationship(child, parent));
+	}
+
+	@Test
+	public void testFingerprintPair() throws Exception {
+		for (HashFunction hashFunction : HashFunction.values()) {
+			FingerprintConfig config = FingerprintConfig.DEFAULT.withHashFunction(hashFunction).withSize(256);
+			FingerprintPair pair = Fingerprinter.calculateFingerprints(childNotation, config);
+			BitSet fingerprint = Fingerprinter.calculateFingerprint(childNotation, config);
+			BitSet naturalFingerprint = Fingerprinter.getHashedFingerprint(getNaturalPaths(childNotation), config);
+			naturalFingerprint.or(fingerprint);
+
+			Assert.assertEquals(fingerprint, pair.getFingerprint().toBitSet());
+			Assert.assertEquals(naturalFingerprint, pair.getNaturalFingerprint().toBitSet());
+			Assert.assertEquals(256, pair.getNaturalFingerprint().getSize());
+		}
+	}
+
+	@Test
+	public void testBitPositionCache() throws Exception {
+		PathHasher hasher = new PathHasher();
+		MonomerDictionary.getInstance().getUnitId("[dA]");
+		for (HashFunction hashFunction : HashFunction.values()) {
+			BitPositionCache cache = BitPositionCache.getInstance(hashFunction);
+			// Known single units are taken from the cache, a second lookup returns the cached position.
+			for (String path : new String[]{"[dA]", "[dA]", "[dA]GC"}) {
+				int position = cache.getBitPosition(path, hasher);
+				for (int bits = 6; bits <= 14; bits++) {
+					Assert.assertEquals(hasher.getBitPosition(path, hashFunction, bits), position & ((1 << bits) - 1));
+				}
+			}
+			// Fingerprints that are calculated with a warm cache are the same as from the path strings.
+			FingerprintConfig config = FingerprintConfig.DEFAULT.withHashFunction(hashFunction);
+			for (int i = 0; i < 2; i++) {
+				Assert.assertEquals(Fingerprinter.getHashedFingerprint(getPaths(parentNotation), config),
+						Fingerprinter.calculateFingerprint(parentNotation, config));
+			}
+		}
+	}
+
+	private static Set<String> getPaths(HELM2Notation notation) throws Exception {
+		PathGenerator pathGenerator = new PathGenerator();
+		pathGenerator.findPaths(MoleculeGraphUtils.buildMoleculeGraph(notation.getListOfPolymers(),
+				notation.getListOfConnections()));
+		return pathGenerator.getPaths();
+	}
+
+	private static Set<String> getNaturalPaths(HELM2Notation notation) throws Exception {
+		PathGenerator pathGenerator = new PathGenerator();
+		pathGenerator.findPaths(MoleculeGraphUtils.buildMoleculeGraph(notation.getListOfPolymers(),
+				notation.getListOfConnections()));
+		return pathGenerator.getNaturalPaths();
+	}
+
+	@Test
+	public void testBatchFingerprints() throws Exception {
+		List<HELM2Notation> notations = Arrays.asList(parentNotation, null, childNotation, parentNotation);
+		ForkJoinPool pool = new ForkJoinPool(2);
+		try {
+			FingerprintOptions options = FingerprintOptions.DEFAULT.withExecutor(pool).withBatchSize(1);
+			List<FingerprintResult> results = Fingerprinter.calculateFingerprints(notations, options);
+			Iterator<FingerprintResult> streamed = Fingerprinter.calculateFingerprints(notations.iterator(), options);
+
+			Assert.assertEquals(notations.size(), results.size());
+			for (int i = 0; i < notations.size(); i++) {
+				FingerprintResult result = results.get(i);
+				FingerprintResult streamedResult = streamed.next();
+				Assert.assertEquals(i, result.getIndex());
+				Assert.assertEquals(i, streamedResult.getIndex());
+				if (notations.get(i) == null) {
+					Assert.assertFalse(result.isSuccessful());
+					Assert.assertNotNull(result.getError());
+					Assert.assertFalse(streamedResult.isSuccessful());
+				} else {
+					Assert.assertEquals(Fingerprinter.calculateHelmFingerprint(notations.get(i)),
+							result.getFingerprint());
+					Assert.assertEquals(Fingerprinter.calculateHelmFingerprintNaturalAnalogs(notations.get(i)),
+							result.getNaturalFingerprint());
+					Assert.assertEquals(result.getFingerprint(), streamedResult.getFingerprint());
+					Assert.assertEquals(result.getNaturalFingerprint(), streamedResult.getNaturalFingerprint());
+				}
+			}
+			Assert.assertFalse(streamed.hasNext());
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testFingerprintsByPathLength() throws Exception {
+		FingerprintConfig config = FingerprintConfig.DEFAULT.withMaxPathLength(8);
+		FingerprintPair[] fingerprints = Fingerprinter.calculateFingerprintsByPathLength(childNotation, config);
+
+		Assert.assertEquals(8, fingerprints.length);
+		for (int length = 1; length <= 8; length++) {
+			Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation, config.withMaxPathLength(length)),
+					fingerprints[length - 1]);
+		}
+		Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation), fingerprints[5]);
+		Assert.assertTrue(fingerprints[0].getFingerprint().getCardinality()
+				< fingerprints[7].getFingerprint().getCardinality());
+	}
+
+	@Test
+	public void testPathBudget() throws Exception {
+		FingerprintConfig config = FingerprintConfig.DEFAULT.withPathBudget(PathBudget.UNLIMITED.withMaxTotalPaths(1));
+		FingerprintPair truncated = Fingerprinter.calculateFingerprints(childNotation, config);
+		FingerprintPair singleMonomers = Fingerprinter.calculateFingerprints(childNotation,
+				FingerprintConfig.DEFAULT.withMaxPathLength(1));
+		List<FingerprintResult> results = Fingerprinter.calculateFingerprints(Arrays.asList(childNotation),
+				FingerprintOptions.DEFAULT.withConfig(config));
+
+		Assert.assertTrue(truncated.isTruncated());
+		Assert.assertEquals(1, truncated.getPathLength());
+		Assert.assertEquals(singleMonomers.getFingerprint(), truncated.getFingerprint());
+		Assert.assertEquals(singleMonomers.getNaturalFingerprint(), truncated.getNaturalFingerprint());
+		Assert.assertTrue(results.get(0).isTruncated());
+		Assert.assertFalse(Fingerprinter.calculateFingerprints(childNotation).isTruncated());
+
+		// Enough paths from every monomer for short paths, but not for the longest ones.
+		PathBudget budget = PathBudget.UNLIMITED.withMaxPathsPerRoot(4);
+		FingerprintPair shortened = Fingerprinter.calculateFingerprints(childNotation,
+				FingerprintConfig.DEFAULT.withPathBudget(budget));
+		Assert.assertTrue(shortened.isTruncated());
+		Assert.assertTrue(shortened.getPathLength() > 1);
+		Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation,
+				FingerprintConfig.DEFAULT.withMaxPathLength(shortened.getPathLength())).getFingerprint(),
+				shortened.getFingerprint());
+	}
+
+	@Test
+	public void testPathBudgetTimeLimit() throws Exception {
+		// Twenty cysteines that are all connected with each other, except for neighbours in the chain: there are
+		// 380 paths of two monomers, too few to ever check the time, but thousands of paths of three monomers.
+		StringBuilder helm = new StringBuilder("PEPTIDE1{C");
+		for (int i = 1; i < 20; i++) {
+			helm.append(".C");
+		}
+		helm.append("}$");
+		for (int i = 1; i <= 20; i++) {
+			for (int j = i + 2; j <= 20; j++) {
+				helm.append(helm.charAt(helm.length() - 1) == '$' ? "" : "|");
+				helm.append("PEPTIDE1,PEPTIDE1,").append(i).append(":R3-").append(j).append(":R3");
+			}
+		}
+		helm.append("$$$V2.0");
+		MoleculeGraph molecule = HELM2Object.makeMoleculeGraph(helm.toString());
+		long timeLimit = 200;
+		FingerprintConfig config = FingerprintConfig.DEFAULT
+				.withPathBudget(PathBudget.UNLIMITED.withTimeLimitMillis(timeLimit));
+
+		// The time limit holds for the molecule, when it has passed the shorter paths do not get any time either.
+		FingerprintPair expired = Fingerprinter.calculateFingerprints(molecule, config,
+				System.nanoTime() - TimeUnit.MILLISECONDS.toNanos(2 * timeLimit));
+		Assert.assertTrue(expired.isTruncated());
+		Assert.assertEquals(2, expired.getPathLength());
+		Assert.assertEquals(Fingerprinter.calculateFingerprints(helm.toString(),
+				FingerprintConfig.DEFAULT.withMaxPathLength(2)).getFingerprint(), expired.getFingerprint());
+
+		// All searches of the molecule together stay within the time limit.
+		long startTime = System.nanoTime();
+		FingerprintPair limited = Fingerprinter.calculateFingerprints(molecule, config, startTime);
+		long elapsed = System.nanoTime() - startTime;
+		Assert.assertTrue("Path search took " + elapsed + " ns.",
+				elapsed < TimeUnit.MILLISECONDS.toNanos(timeLimit + 50));
+		Assert.assertEquals(Fingerprinter.calculateFingerprints(helm.toString(),
+				FingerprintConfig.DEFAULT.withMaxPathLength(limited.getPathLength())).getFingerprint(),
+				limited.getFingerprint());
+	}
+
+	@Test
+	public void testFingerprintsFromHelm() throws Exception {
+		String childHELM = "RNA1{R(A)P.R(G)P.R(C)P}$$$$V2.0";
+		Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation),
+				Fingerprinter.calculateFingerprints(childHELM, FingerprintConfig.DEFAULT));
+
+		Iterator<FingerprintResult> results = Fingerprinter.calculateFingerprintsFromHelm(
+				Arrays.asList(childHELM, "PEPTIDE1{A.C}\"note\"$$$$V2.0", "PEPTIDE1{").iterator(),
+				FingerprintOptions.DEFAULT);
+		Assert.assertEquals(Fingerprinter.calculateHelmFingerprint(childNotation), results.next().getFingerprint());
+		Assert.assertTrue(results.next().isSuccessful());
+		Assert.assertFalse(results.next().isSuccessful());
+	}
+
+	@Test
+	public void testConcurrentParsing() throws Exception {
+		String[] helms = {"RNA1{R(A)P.R(G)P}$$$$V2.0", "RNA1{R(A)P.R(G)P.R(C)P}$$$$"};
+		FingerprintPair[] expected = {Fingerprinter.calculateFingerprints(parentNotation),
+				Fingerprinter.calculateFingerprints(childNotation)};
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			List<Future<FingerprintPair>> results = new ArrayList<>();
+			for (int i = 0; i < 200; i++) {
+				String helm = helms[i % helms.length];
+				results.add(pool.submit(() -> Fingerprinter.calculateFingerprints(
+						HELM2Object.makeHELM2NotationObject(helm))));
+			}
+			for (int i = 0; i < results.size(); i++) {
+				Assert.assertEquals(expected[i % helms.length], results.get(i).get());
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testFingerprintCache() throws Exception {
+		String childHELM = "RNA1{R(A)P.R(G)P.R(C)P}$$$$V2.0";
+		FingerprintCache cache = new FingerprintCache(1);
+		FingerprintPair pair = cache.get(childHELM);
+
+		Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation), pair);
+		Assert.assertSame(pair, cache.get(" " + childHELM + "\n"));
+		Assert.assertEquals(1, cache.getHitCount());
+		Assert.assertEquals(1, cache.getMissCount());
+
+		// The least recently used notation is evicted.
+		cache.get(parentNotation);
+		Assert.assertEquals(1, cache.size());
+		Assert.assertEquals(1, cache.getEvictionCount());
+		Assert.assertNull(cache.getIfPresent(childHELM));
+
+		// Fingerprints of another version of the natural analogs are not returned.
+		long version = NaturalAnalogIndex.getInstance().getVersion();
+		Assert.assertNotNull(cache.getIfPresent(parentNotation.toHELM2(), version));
+		Assert.assertNull(cache.getIfPresent(parentNotation.toHELM2(), version + 1));
+		Assert.assertEquals(0, cache.size());
+
+		Similarity.setFingerprintCache(new FingerprintCache(16));
+		try {
+			Assert.assertEquals(Similarity.calculateSimilarity(Fingerprinter.calculateFingerprint(parentNotation),
+					Fingerprinter.calculateFingerprint(childNotation)),
+					Similarity.calculateSimilarity(parentNotation, childNotation), 0);
+			Assert.assertEquals(2, Similarity.getFingerprintCache().size());
+		} finally {
+			Similarity.setFingerprintCache(null);
+		}
+	}
+
+	@Test
+	public void testPersistentFingerprintCache() throws Exception {
+		String childHELM = "RNA1{R(A)P.R(G)P.R(C)P}$$$$V2.0";
+		FingerprintConfig config = FingerprintConfig.DEFAULT;
+		Path file = Files.createTempFile("fingerprints", ".fpcache");
+		Path indexFile = file.resolveSibling(file.getFileName() + ".idx");
+		try {
+			try (PersistentFingerprintCache cache = PersistentFingerprintCache.open(file)) {
+				Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation), cache.get(childHELM, config));
+				Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation), cache.get(childHELM, config));
+				cache.get(parentNotation, config);
+				Assert.assertEquals(2, cache.size());
+				Assert.assertEquals(1, cache.getHitCount());
+				Assert.assertEquals(2, cache.getMissCount());
+			}
+
+			// The fingerprints are read back after reopening, a record that is missing in the
+			// index is indexed again and an incomplete record at the end is removed.
+			long length = Files.size(file);
+			Files.write(indexFile, Arrays.copyOf(Files.readAllBytes(indexFile), (int) Files.size(indexFile) - 24));
+			Files.write(file, new byte[]{1, 2, 3}, StandardOpenOption.APPEND);
+			try (PersistentFingerprintCache cache = PersistentFingerprintCache.open(file)) {
+				Assert.assertEquals(2, cache.size());
+				Assert.assertEquals(length, Files.size(file));
+				Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation), cache.get(childHELM, config));
+				Assert.assertEquals(Fingerprinter.calculateFingerprints(parentNotation),
+						cache.get(parentNotation, config));
+				Assert.assertEquals(2, cache.getHitCount());
+
+				// Another configuration has its own fingerprints.
+				FingerprintConfig xxHashConfig = config.withHashFunction(HashFunction.XXHASH64);
+				Assert.assertEquals(Fingerprinter.calculateFingerprints(childNotation, xxHashConfig),
+						cache.get(childHELM, xxHashConfig));
+				Assert.assertEquals(1, cache.getMissCount());
+			}
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(indexFile);
+		}
+	}
+
+	@Test
+	public void testPersistentFingerprintCacheLock() throws Exception {
+		Path file = Files.createTempFile("fingerprints", ".fpcache");
+		Path indexFile = file.resolveSibling(file.getFileName() + ".idx");
+		try {
+			try (PersistentFingerprintCache cache = PersistentFingerprintCache.open(file)) {
+				cache.get(parentNotation, FingerprintConfig.DEFAULT);
+				try {
+					PersistentFingerprintCache.open(file).close();
+					Assert.fail("The cache file was opened twice.");
+				} catch (IOException e) {
+					// expected, the file is locked by the first cache
+				}
+				Assert.assertEquals(1, cache.size());
+			}
+
+			// The lock is released when the cache is closed.
+			try (PersistentFingerprintCache cache = PersistentFingerprintCache.open(file)) {
+				Assert.assertEquals(1, cache.size());
+			}
+		} finally {
+			Files.deleteIfExists(file);
+			Files.deleteIfExists(indexFile);
+		}
+	}
+
+	@Test
+	public void testFingerprintIndex() throws Exception {
+		Random random = new Random(42);
+		List<HelmFingerprint> fingerprints = new ArrayList<>();
+		fingerprints.add(Fingerprinter.calculateHelmFingerprint(childNotation));
+		fingerprints.add(Fingerprinter.calculateHelmFingerprint(parentNotation));
+		fingerprints.add(HelmFingerprint.fromBitSet(new BitSet()));
+		for (int i = 0; i < 200; i++) {
+			long[] words = new long[16];
+			for (int w = 0; w < words.length; w++) {
+				words[w] = random.nextLong() & random.nextLong() & random.nextLong();
+			}
+			fingerprints.add(HelmFingerprint.fromWords(words));
+		}
+		FingerprintIndex index = new FingerprintIndex(1024);
+		for (int i = 0; i < fingerprints.size(); i++) {
+			index.add(1000 + i, fingerprints.get(i));
+		}
+		Assert.assertEquals(fingerprints.size(), index.size());
+		Assert.assertEquals(fingerprints.get(1), index.getFingerprint(1));
+
+		HelmFingerprint query = fingerprints.get(0);
+		SearchResult hits = index.searchThreshold(query, 0.1);
+		int expectedHits = 0;
+		for (int i = 0; i < fingerprints.size(); i++) {
+			if (i != 2 && Similarity.calculateSimilarity(query, fingerprints.get(i)) >= 0.1) {
+				expectedHits++;
+			}
+		}
+		Assert.assertEquals(expectedHits, hits.size());
+		Assert.assertEquals(1000, hits.getId(0));
+		Assert.assertEquals(1.0, hits.getScore(0), 0);
+		for (int rank = 0; rank < hits.size(); rank++) {
+			Assert.assertEquals(Similarity.calculateSimilarity(query, fingerprints.get(hits.getId(rank) - 1000)),
+					hits.getScore(rank), 0);
+			Assert.assertTrue(rank == 0 || hits.getScore(rank - 1) >= hits.getScore(rank));
+		}
+
+		// The top k are the first k hits of a search without a minimal similarity.
+		SearchResult all = index.searchThreshold(query, 0);
+		Assert.assertEquals(fingerprints.size(), all.size());
+		for (int k : new int[]{0, 1, 10, 500}) {
+			SearchResult topK = index.searchTopK(query, k);
+			Assert.assertEquals(Math.min(k, all.size()), topK.size());
+			for (int rank = 0; rank < topK.size(); rank++) {
+				Assert.assertEquals(all.getId(rank), topK.getId(rank));
+				Assert.assertEquals(all.getScore(rank), topK.getScore(rank), 0);
+			}
+		}
+
+		// The parent notation is a subset of the child notation.
+		HelmFingerprint parent = fingerprints.get(1);
+		SearchResult subsets = index.searchSubsets(parent);
+		int expectedSubsets = 0;
+		for (HelmFingerprint fingerprint : fingerprints) {
+			expectedSubsets += Subset.checkHelmRelationship(parent, fingerprint) ? 1 : 0;
+		}
+		Assert.assertEquals(expectedSubsets, subsets.size());
+		Assert.assertEquals(1001, subsets.getId(0));
+		for (int rank = 0; rank < subsets.size(); rank++) {
+			Assert.assertTrue(Subset.checkHelmRelationship(parent, fingerprints.get(subsets.getId(rank) - 1000)));
+		}
+		Assert.assertTrue(Arrays.stream(subsets.getIds()).anyMatch(id -> id == 1000));
+
+		// The words of all entries have to fit in one array.
+		try {
+			new FingerprintIndex(16384, 9000000);
+			Assert.fail("An index larger than an array was created.");
+		} catch (IllegalStateException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void testParallelTopK() throws Exception {
+		// Enough entries to split the search into several tasks, with many equal similarities.
+		Random random = new Random(7);
+		FingerprintIndex index = new FingerprintIndex(64, 300000);
+		for (int i = 0; i < 300000; i++) {
+			index.add(i, HelmFingerprint.fromWords(new long[]{random.nextLong() & random.nextLong()}));
+		}
+		HelmFingerprint query = HelmFingerprint.fromWords(new long[]{random.nextLong()});
+		for (int k : new int[]{1, 50, 1000}) {
+			Assert.assertEquals(index.searchTopK(query, k), index.searchTopK(query, k, ForkJoinPool.commonPool()));
+		}
+		Assert.assertEquals(index.searchThreshold(query, 0).getId(0),
+				index.searchTopK(query, 1, ForkJoinPool.commonPool()).getId(0));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testInvalidSize() {
+		new FingerprintConfig(1000, HashFunction.XXHASH64);
+	}
+
 }
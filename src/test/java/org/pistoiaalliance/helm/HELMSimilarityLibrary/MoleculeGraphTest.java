@@ -15,7 +15,12 @@ import org.junit.Before;
 import org.junit.Test;
 
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Graph;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.HelmGraphParser;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraph;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraphUtils;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MonomerDictionary;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NaturalAnalogIndex;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NucleotideTemplate;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Vertex;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Vertex.Type;
 
@@ -64,4 +69,145 @@ public class MoleculeGraphTest {
 		assertTrue("Graphs are not equal!", expectedGraph.equals(testGraph));
 	}
 
+	@Test
+	public void connectionAfterRNATest() throws ExceptionState, org.helm.notation2.parser.exceptionparser.NotationException {
+		// The RNA polymer has three vertices but only one nucleotide, the connection
+		// of the peptide has to start counting after all three of them.
+		String helm = "RNA1{R(A)P}|PEPTIDE1{A.C.G.C}$PEPTIDE1,PEPTIDE1,2:R3-4:R3$$$V2.0";
+		ParserHELM2 parser = new ParserHELM2();
+		parser.parse(new ConverterHELM1ToHELM2().doConvert(helm));
+		HELM2Notation rnaPeptide = parser.getHELM2Notation();
+
+		Graph testGraph = MoleculeGraphUtils.buildMoleculeGraph(rnaPeptide.getListOfPolymers(),
+				rnaPeptide.getListOfConnections());
+		Vertex firstCysteine = testGraph.getVertices().get(4);
+		Vertex secondCysteine = testGraph.getVertices().get(6);
+		assertEquals("C", firstCysteine.toString());
+		assertEquals("C", secondCysteine.toString());
+		assertTrue("Cysteines are not connected!", firstCysteine.getNeighbourList().contains(secondCysteine));
+		// The phosphate is only bound to its ribose.
+		assertEquals(1, testGraph.getVertices().get(2).getNeighbourList().size());
+	}
+
+	@Test
+	public void compactGraphTest() throws ExceptionState, org.helm.notation2.parser.exceptionparser.NotationException {
+		String helm = "RNA1{R(A)P.[LR](G)P}|PEPTIDE1{A.[dA].C.G.C}|CHEM1{[Test_m]}"
+				+ "$PEPTIDE1,PEPTIDE1,3:R3-5:R3|CHEM1,RNA1,1:R1-1:R1$$$V2.0";
+		ParserHELM2 parser = new ParserHELM2();
+		parser.parse(new ConverterHELM1ToHELM2().doConvert(helm));
+		HELM2Notation molecule = parser.getHELM2Notation();
+
+		Graph graph = MoleculeGraphUtils.buildMoleculeGraph(molecule.getListOfPolymers(),
+				molecule.getListOfConnections());
+		MoleculeGraph compactGraph = MoleculeGraphUtils.buildCompactMoleculeGraph(molecule.getListOfPolymers(),
+				molecule.getListOfConnections());
+
+		// The compact graph has the same vertices and neighbours, in the same order.
+		assertEquals(graph.vertexCount(), compactGraph.getVertexCount());
+		for (int i = 0; i < graph.vertexCount(); i++) {
+			Vertex vertex = graph.getVertices().get(i);
+			assertEquals(vertex.toString(), compactGraph.getUnit(i));
+			assertEquals(vertex.monomerType, compactGraph.getType(i));
+			assertEquals(vertex.isNonNatural(), compactGraph.isNonNatural(i));
+			assertEquals(vertex.hasUniqueUnit(), compactGraph.hasUniqueUnit(i));
+			assertEquals(vertex.getNeighbourList().size(), compactGraph.getNeighbourCount(i));
+			int position = compactGraph.getNeighbourStart(i);
+			for (Vertex neighbour : vertex.getNeighbourList()) {
+				assertEquals(neighbour.getIndex(), compactGraph.getNeighbour(position++));
+			}
+		}
+		// Both cysteines share one monomer id, the adenine of the RNA and the peptide differ in type.
+		MonomerDictionary dictionary = MonomerDictionary.getInstance();
+		assertEquals(compactGraph.getMonomerId(8), compactGraph.getMonomerId(10));
+		assertEquals("C", dictionary.getMonomerUnit(compactGraph.getMonomerId(8)));
+		assertNotEquals(compactGraph.getMonomerId(1), compactGraph.getMonomerId(6));
+		assertEquals(compactGraph.getMonomerId(8), dictionary.getMonomerId("C", Type.PEPTIDE, false, false));
+	}
+
+	@Test
+	public void nucleotideTemplateTest() throws ExceptionState, org.helm.notation2.parser.exceptionparser.NotationException {
+		NucleotideTemplate template = NucleotideTemplate.get("R(A)P");
+		assertSame(template, NucleotideTemplate.get("R(A)P"));
+		// A full cache removes the least recently used unit, a unit that is used again stays cached.
+		NucleotideTemplate first = NucleotideTemplate.get("R([dA])P");
+		for (int i = 0; i < NucleotideTemplate.MAX_CACHE_SIZE; i++) {
+			NucleotideTemplate.get("R([X" + i + "])P");
+			assertSame(template, NucleotideTemplate.get("R(A)P"));
+		}
+		assertNotSame(first, NucleotideTemplate.get("R([dA])P"));
+		assertEquals(3, template.size());
+		assertEquals("A", template.getMonomers().get(1).getUnit());
+		assertEquals(2, template.getEdgeCount());
+		assertEquals(2, template.getEdgeTarget(1));
+
+		// Bonds between nucleotides: phosphate to the next ribose and ribose to a phosphate of its own unit.
+		ParserHELM2 parser = new ParserHELM2();
+		parser.parse(new ConverterHELM1ToHELM2().doConvert("RNA1{R(A)P.R(G).P.[dR](C)}$$$$V2.0"));
+		HELM2Notation molecule = parser.getHELM2Notation();
+		MoleculeGraph compactGraph = MoleculeGraphUtils.buildCompactMoleculeGraph(molecule.getListOfPolymers(),
+				molecule.getListOfConnections());
+		int[][] neighbours = {{1, 2}, {0}, {0, 3}, {2, 4, 5}, {3}, {3, 6}, {5, 7}, {6}};
+		assertEquals(neighbours.length, compactGraph.getVertexCount());
+		for (int i = 0; i < neighbours.length; i++) {
+			assertEquals(neighbours[i].length, compactGraph.getNeighbourCount(i));
+			for (int n = 0; n < neighbours[i].length; n++) {
+				assertEquals(neighbours[i][n], compactGraph.getNeighbour(compactGraph.getNeighbourStart(i) + n));
+			}
+		}
+	}
+
+	@Test
+	public void helmGraphParserTest() throws Exception {
+		String[] helms = {
+				"PEPTIDE1{A.[dA].[meA].C.[Nal].K}$$$$V2.0",
+				"PEPTIDE1{C.A.A.G.K.C.R.P}$PEPTIDE1,PEPTIDE1,1:R3-6:R3$$$V2.0",
+				"RNA1{[dR](A)[sP].[mR]([5meC])P.R(U)P.[LR](G)[sP].R(A)}$$$$V2.0",
+				"PEPTIDE1{A.C.G.K}|CHEM1{PEG2}|RNA1{R(A)P.R(C)}$PEPTIDE1,CHEM1,4:R2-1:R1|CHEM1,RNA1,1:R2-1:R1$$$V2.0",
+				"PEPTIDE1{A.C.G.K}$$$$"};
+		for (String helm : helms) {
+			HELM2Notation molecule = HELM2Object.makeHELM2NotationObject(helm);
+			MoleculeGraph expected = MoleculeGraphUtils.buildCompactMoleculeGraph(molecule.getListOfPolymers(),
+					molecule.getListOfConnections());
+			MoleculeGraph graph = HelmGraphParser.parse(helm);
+			assertNotNull(helm, graph);
+			assertEquals(expected.getVertexCount(), graph.getVertexCount());
+			for (int i = 0; i < expected.getVertexCount(); i++) {
+				assertEquals(expected.getMonomerId(i), graph.getMonomerId(i));
+				assertEquals(expected.getNeighbourCount(i), graph.getNeighbourCount(i));
+				for (int n = 0; n < expected.getNeighbourCount(i); n++) {
+					assertEquals(expected.getNeighbour(expected.getNeighbourStart(i) + n),
+							graph.getNeighbour(graph.getNeighbourStart(i) + n));
+				}
+			}
+		}
+
+		// Unusual notations are left to the HELM toolkit.
+		assertNull(HelmGraphParser.parse("PEPTIDE1{A.C}\"note\"$$$$V2.0"));
+		assertNull(HelmGraphParser.parse("PEPTIDE1{A.(C,G).K}$$$$V2.0"));
+		assertNull(HelmGraphParser.parse("PEPTIDE1{A.C'3'}$$$$V2.0"));
+		assertNull(HelmGraphParser.parse("PEPTIDE1{A.C}|PEPTIDE2{G}$$G1(PEPTIDE1+PEPTIDE2)$$V2.0"));
+		assertNull(HelmGraphParser.parse("BLOB1{Bead}$$$$V2.0"));
+		assertNull(HelmGraphParser.parse("CHEM1{[*]OCC[*] |$_R1;;;;_R2$|}$$$$V2.0"));
+		assertNull(HelmGraphParser.parse("PEPTIDE1{A.C}$PEPTIDE1,PEPTIDE2,1:R3-2:R3$$$V2.0"));
+		assertNull(HelmGraphParser.parse("PEPTIDE1{A.C}$PEPTIDE1,PEPTIDE1,1:R3-3:R3$$$V2.0"));
+	}
+
+	@Test
+	public void monomerDictionaryTest() throws Exception {
+		MonomerDictionary dictionary = MonomerDictionary.getInstance();
+		int adenine = dictionary.getMonomerId("A", Type.RNA, false, true);
+		int modified = dictionary.getMonomerId("[dA]", Type.PEPTIDE, true, false);
+		assertEquals(adenine, dictionary.getMonomerId("A", Type.RNA, false, true));
+		assertEquals(Type.PEPTIDE, dictionary.getType(modified));
+		assertTrue(dictionary.isNonNatural(modified));
+		assertTrue(dictionary.hasUniqueUnit(adenine));
+
+		// Natural RNA monomers are lower case in paths, modified monomers are replaced by their natural analog.
+		assertEquals("a", dictionary.getUnit(dictionary.getUnitId(adenine)));
+		assertEquals("[dA]", dictionary.getUnit(dictionary.getUnitId(modified)));
+		assertEquals("A", dictionary.getUnit(dictionary.getNaturalUnitId(modified, NaturalAnalogIndex.getInstance())));
+		assertEquals("[dA]", dictionary.getUnit(dictionary.getNaturalUnitId(modified, NaturalAnalogIndex.EMPTY)));
+		assertNotEquals(dictionary.getToken(dictionary.getUnitId("a")), dictionary.getToken(dictionary.getUnitId("A")));
+	}
+
 }
@@ -1,22 +1,31 @@
 package org.pistoiaalliance.helm.HELMSimilarityLibrary;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 import org.helm.notation2.exception.ChemistryException;
 import org.helm.notation2.exception.MonomerLoadingException;
 import org.helm.notation2.exception.NotationException;
+import org.helm.notation2.parser.notation.HELM2Notation;
 import org.helm.notation2.parser.notation.polymer.MonomerNotationUnit;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.exception.NaturalAnalogException;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Graph;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.MoleculeGraphUtils;
+import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.NaturalAnalogIndex;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Vertex;
 import org.pistoiaalliance.helm.HELMSimilarityLibrary.utils.Vertex.Type;
 
@@ -360,4 +369,93 @@ public class PathGeneratorTest {
 		dfs.clearPaths();
 	}
 
+	@Test
+	public void visitPathsTest() throws Exception {
+		Vertex v1 = new Vertex(new MonomerNotationUnit("A","PEPTIDE"), Type.PEPTIDE, false, false, 0);
+		Vertex v2 = new Vertex(new MonomerNotationUnit("C","PEPTIDE"), Type.PEPTIDE, false, false, 1);
+		Vertex v3 = new Vertex(new MonomerNotationUnit("A","PEPTIDE"), Type.PEPTIDE, false, false, 2);
+		v1.addBothNeighbours(v2);
+		v2.addBothNeighbours(v3);
+		List<Vertex> vertexList = new ArrayList<>();
+		vertexList.add(v1);
+		vertexList.add(v2);
+		vertexList.add(v3);
+		Graph testGraph = new Graph(vertexList);
+
+		// Every path of the molecule is visited once, also if its units occur at several places,
+		// and its key is the same as the key calculated from all of its units.
+		PathGenerator generator = new PathGenerator();
+		List<String> visitedPaths = new ArrayList<>();
+		generator.visitPaths(testGraph, PathGenerator.DEFAULT_SEARCH_DEPTH, (monomerIds, length, key) -> {
+			visitedPaths.add(generator.getPath(monomerIds, length));
+			assertEquals(generator.getPathKey(monomerIds, length), key);
+		}, null);
+		assertEquals(6, visitedPaths.size());
+		assertTrue(generator.getPaths().isEmpty());
+
+		generator.findPaths(testGraph);
+		assertEquals(new HashSet<>(visitedPaths), generator.getPaths());
+		assertEquals(4, generator.getPaths().size());
+	}
+
+	@Test
+	public void naturalAnalogTest() throws Exception {
+		NaturalAnalogIndex index = NaturalAnalogIndex.getInstance();
+		assertSame("Index was built again!", index, NaturalAnalogIndex.getInstance());
+
+		assertEquals("A", dfs.getNaturalPeptide("dA"));
+		assertEquals("A", dfs.getNaturalPeptide("DA"));
+		assertEquals("r", dfs.getNaturalRNA("LR"));
+		assertEquals("r", dfs.getNaturalRNA("lr"));
+		// Unknown monomers are kept, also when they are looked up again.
+		assertEquals("[Xyz]", dfs.getNaturalPeptide("Xyz"));
+		assertEquals("[Xyz]", dfs.getNaturalPeptide("Xyz"));
+		assertEquals("[dA]", dfs.getNaturalRNA("dA"));
+		assertEquals("[Xyz]", NaturalAnalogIndex.EMPTY.getNaturalPeptide("Xyz"));
+	}
+
+	@Test
+	public void concurrentFindPathsTest() throws Exception {
+		// Several generators searching in parallel must find the same paths and
+		// fingerprints as a single generator searching one molecule after another.
+		String[] helms = {
+				"PEPTIDE1{A.[dA].[meA].C.[Nal].K.[Orn].G.[Aib].R.P.A.C}$$$$V2.0",
+				"PEPTIDE1{C.A.A.G.K.C.R.P}$PEPTIDE1,PEPTIDE1,1:R3-6:R3$$$V2.0",
+				"RNA1{[dR](A)[sP].[mR]([5meC])P.R(U)P.[LR](G)[sP].R(A)}$$$$V2.0",
+				"RNA1{[LR](A)P.[LR](A)}|CHEM1{[Test_m]}$CHEM1,RNA1,1:R1-1:R1$$$V2.0"};
+		List<Graph> molecules = new ArrayList<>();
+		List<BitSet> expected = new ArrayList<>();
+		for (String helm : helms) {
+			HELM2Notation notation = HELM2Object.makeHELM2NotationObject(helm);
+			Graph molecule = MoleculeGraphUtils.buildMoleculeGraph(notation.getListOfPolymers(),
+					notation.getListOfConnections());
+			PathGenerator generator = new PathGenerator();
+			generator.findPaths(molecule);
+			BitSet fingerprint = Fingerprinter.getHashedFingerprint(generator.getPaths());
+			fingerprint.or(Fingerprinter.getHashedFingerprint(generator.getNaturalPaths()));
+			molecules.add(molecule);
+			expected.add(fingerprint);
+		}
+
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+		try {
+			List<Future<Boolean>> results = new ArrayList<>();
+			for (int i = 0; i < 400; i++) {
+				final int idx = i % molecules.size();
+				results.add(executor.submit(() -> {
+					PathGenerator generator = new PathGenerator();
+					generator.findPaths(molecules.get(idx));
+					BitSet fingerprint = Fingerprinter.getHashedFingerprint(generator.getPaths());
+					fingerprint.or(Fingerprinter.getHashedFingerprint(generator.getNaturalPaths()));
+					return fingerprint.equals(expected.get(idx));
+				}));
+			}
+			for (Future<Boolean> result : results) {
+				assertTrue("Fingerprint differs from single-threaded result!", result.get());
+			}
+		} finally {
+			executor.shutdown();
+		}
+	}
+
 }